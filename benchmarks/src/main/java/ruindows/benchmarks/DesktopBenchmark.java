@@ -0,0 +1,250 @@
+package ruindows.benchmarks;
+
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ruindows.DesktopShortcut;
+import ruindows.DesktopView;
+import ruindows.FileStore;
+import ruindows.ImageCache;
+import ruindows.PixelPipeline;
+import ruindows.ShortcutFactory;
+import ruindows.TaskScheduler;
+import ruindows.Thumbnails;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Creating desktop shortcuts through the ShortcutFactory Main uses, putting
+// them on the desktop grid, and showing image shortcuts, whose thumbnails
+// are read or made from a file store the way the desktop does it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DesktopBenchmark {
+
+    private static final int ICON_SIZE = 48;
+    private static final String THUMBNAIL_PREFIX = "thumbnail/";
+    // Distinct pictures behind the image shortcuts, more than fit on one screen
+    private static final int PICTURES = 64;
+    private static final long CACHE_BYTES = 32L * 1024 * 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int count;
+
+    private String[] names;
+    private String[] imageNames;
+    private List<DesktopShortcut> shortcuts;
+    private Path directory;
+    private FileStore store;
+    private TaskScheduler tasks;
+
+    // Made again for every invocation, so each one starts with a cold cache
+    private Thumbnails thumbnails;
+    private ShortcutFactory factory;
+    private final Semaphore arrived = new Semaphore(0);
+
+    @Setup
+    public void setup() throws IOException {
+        FxToolkit.start();
+        names = new String[count];
+        imageNames = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = "file" + i + ".txt";
+            imageNames[i] = "picture" + i + ".png";
+        }
+
+        // Names share the pictures round robin, as copies of a photo share one content
+        directory = Files.createTempDirectory("desktop-benchmark");
+        store = FileStore.open(directory);
+        List<byte[]> pictures = new ArrayList<>();
+        for (int i = 0; i < PICTURES; i++) {
+            pictures.add(picture(i));
+        }
+        List<FileStore.Prepared> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ByteBuffer picture = ByteBuffer.wrap(pictures.get(i % PICTURES));
+            files.add(FileStore.prepare(imageNames[i], FileStore.Kind.IMAGE, picture));
+        }
+        store.writeAll(files);
+        tasks = new TaskScheduler(Math.max(2, Runtime.getRuntime().availableProcessors()), 1);
+        newFactory();
+        shortcuts = createShortcuts();
+    }
+
+    @Setup(Level.Invocation)
+    public void newFactory() {
+        thumbnails = new Thumbnails(new StoreThumbnails(), new ImageCache(CACHE_BYTES), tasks, ICON_SIZE,
+                arrived::release);
+        factory = new ShortcutFactory(new ImageCache(CACHE_BYTES), thumbnails, ICON_SIZE, this);
+        arrived.drainPermits();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        tasks.shutdown(10, TimeUnit.SECONDS);
+        store.close();
+        try (var files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // Text file shortcuts share one icon, decoded once
+    @Benchmark
+    public List<DesktopShortcut> createShortcuts() {
+        Image icon = factory.icon("notepad-icon.png");
+        List<DesktopShortcut> created = new ArrayList<>(count);
+        for (String name : names) {
+            created.add(factory.create(icon, name, () -> { }));
+        }
+        return created;
+    }
+
+    // Image shortcuts ask for their thumbnail only once they are shown
+    @Benchmark
+    public List<DesktopShortcut> createImageShortcuts() {
+        List<DesktopShortcut> created = new ArrayList<>(count);
+        for (String name : imageNames) {
+            created.add(factory.createImage(name, () -> { }));
+        }
+        return created;
+    }
+
+    // One add per shortcut followed by the layout of the first screen
+    @Benchmark
+    public DesktopView addShortcutsToGrid() {
+        DesktopView view = newDesktop();
+        for (DesktopShortcut shortcut : shortcuts) {
+            view.add(shortcut);
+        }
+        view.layout();
+        return view;
+    }
+
+    // The whole desktop in one batch, as createDefaultShortcuts does
+    @Benchmark
+    public DesktopView addAllToGrid() {
+        DesktopView view = newDesktop();
+        view.addAll(shortcuts);
+        view.layout();
+        return view;
+    }
+
+    // The first screen of image shortcuts until every thumbnail on it is
+    // shown, read from the store and decoded on the COMPUTE lane
+    @Benchmark
+    public DesktopView showImageShortcuts() throws Exception {
+        return showImages();
+    }
+
+    // Same, for pictures whose thumbnails have not been made yet
+    @Benchmark
+    public DesktopView showNewImageShortcuts(NewPictures pictures) throws Exception {
+        return showImages();
+    }
+
+    // Removes the stored thumbnails before every invocation that needs them made
+    @State(Scope.Benchmark)
+    public static class NewPictures {
+        @Setup(Level.Invocation)
+        public void deleteThumbnails(DesktopBenchmark desktop) throws IOException {
+            for (int i = 0; i < Math.min(desktop.count, PICTURES); i++) {
+                String thumbnail = THUMBNAIL_PREFIX + desktop.store.contentHash(desktop.imageNames[i]);
+                if (desktop.store.contains(thumbnail)) {
+                    desktop.store.delete(thumbnail);
+                }
+            }
+        }
+    }
+
+    private DesktopView showImages() throws Exception {
+        DesktopView view = newDesktop();
+        view.addAll(createImageShortcuts());
+        view.layout();
+
+        // Each distinct picture bound to a cell arrives once
+        Set<String> shown = new HashSet<>();
+        for (int i = 0; i < Math.min(count, view.getCellCount()); i++) {
+            shown.add(store.contentHash(imageNames[i]));
+        }
+        if (!arrived.tryAcquire(shown.size(), 30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Thumbnails did not arrive");
+        }
+        view.refresh();
+        view.layout();
+        return view;
+    }
+
+    // The view is not in a showing window, so this thread may build and lay it out
+    private static DesktopView newDesktop() {
+        DesktopView view = new DesktopView(5);
+        new Scene(view, 800, 570);
+        view.applyCss();
+        return view;
+    }
+
+    // A photo-sized picture that differs for every i, so every one has its own thumbnail
+    private static byte[] picture(int i) throws IOException {
+        int width = 640;
+        int height = 480;
+        PixelPipeline.Raster raster = new PixelPipeline.Raster(width, height);
+        int[] pixels = raster.getPixels();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = 0xFF000000 | ((x + i * 13) & 0xFF) << 16 | ((y + i * 7) & 0xFF) << 8 | i;
+            }
+        }
+        return PixelPipeline.encodePng(raster);
+    }
+
+    // Thumbnails kept as THUMBNAIL files in the store, as Main keeps them
+    private class StoreThumbnails implements Thumbnails.Storage {
+        @Override
+        public String imageKey(String fileName) {
+            return store.contentHash(fileName);
+        }
+
+        @Override
+        public byte[] readImage(String fileName) throws IOException {
+            return store.read(fileName);
+        }
+
+        @Override
+        public byte[] readThumbnail(String key) throws IOException {
+            return store.read(THUMBNAIL_PREFIX + key);
+        }
+
+        @Override
+        public boolean hasThumbnail(String key) {
+            return store.contains(THUMBNAIL_PREFIX + key);
+        }
+
+        @Override
+        public void writeThumbnail(String key, byte[] data) throws IOException {
+            store.write(THUMBNAIL_PREFIX + key, FileStore.Kind.THUMBNAIL, data);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ruindows.benchmarks;
+
+import javafx.application.Platform;
+
+// Starts the JavaFX toolkit once per benchmark JVM. Unless told otherwise it
+// runs on the headless Monocle platform with software rendering, so results
+// do not depend on the machine's display.
+final class FxToolkit {
+
+    private static boolean started = false;
+
+    private FxToolkit() {
+    }
+
+    static synchronized void start() {
+        if (started) {
+            return;
+        }
+        setDefault("glass.platform", "Monocle");
+        setDefault("monocle.platform", "Headless");
+        setDefault("prism.order", "sw");
+        setDefault("java.awt.headless", "true");
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException e) {
+            // Already running
+        }
+        started = true;
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ruindows.benchmarks;
+
+import javafx.scene.image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+// Decoding the bundled pictures at full size against the sizes they are shown at
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageDecodeBenchmark {
+
+    @Param({"nature.jpg", "homepage.jpg", "cat-image1.jpg"})
+    public String resource;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        FxToolkit.start();
+        try (InputStream in = ImageDecodeBenchmark.class.getResourceAsStream("/" + resource)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + resource);
+            }
+            encoded = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public Image decodeFullSize() {
+        return decode(0, 0);
+    }
+
+    // Desktop backgrounds
+    @Benchmark
+    public Image decodeScreenSize() {
+        return decode(800, 600);
+    }
+
+    // Desktop icons and thumbnails
+    @Benchmark
+    public Image decodeIconSize() {
+        return decode(48, 48);
+    }
+
+    private Image decode(int width, int height) {
+        Image image = new Image(new ByteArrayInputStream(encoded), width, height, true, true);
+        if (image.isError()) {
+            throw new IllegalStateException("Could not decode " + resource, image.getException());
+        }
+        return image;
+    }
+}
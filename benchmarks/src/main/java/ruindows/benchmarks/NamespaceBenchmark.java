@@ -0,0 +1,61 @@
+package ruindows.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ruindows.FileNamespace;
+import ruindows.FileStore;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// The uniqueness check and name suggestions of the save and download dialogs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamespaceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int count;
+
+    private FileNamespace names;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        names = new FileNamespace();
+        for (int i = 0; i < count; i++) {
+            names.add("file" + i + ".txt", FileStore.Kind.TEXT);
+        }
+    }
+
+    // A new name is claimed and given back, so the namespace keeps its size
+    @Benchmark
+    public boolean claimNewName() {
+        String name = "new" + (next++ & 1023) + ".txt";
+        boolean claimed = names.add(name, FileStore.Kind.TEXT);
+        names.remove(name);
+        return claimed;
+    }
+
+    @Benchmark
+    public boolean rejectExistingName() {
+        return names.add("file" + (next++ % count) + ".txt", FileStore.Kind.TEXT);
+    }
+
+    @Benchmark
+    public List<String> suggestNames() {
+        return names.withPrefix("file1", 8);
+    }
+}
@@ -0,0 +1,99 @@
+package ruindows.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ruindows.DocumentResidency;
+import ruindows.FileStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Saving and reading text documents, on disk and in the in-memory residency
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextStoreBenchmark {
+
+    private static final int DOCUMENTS = 64;
+
+    @Param({"1024", "65536"})
+    public int length;
+
+    private Path directory;
+    private FileStore store;
+    private DocumentResidency residency;
+    private String content;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("ruindows-bench");
+        store = FileStore.open(directory);
+        residency = new DocumentResidency(DOCUMENTS * (long) length, store::readText);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append("word").append(i).append(i % 12 == 0 ? '\n' : ' ');
+        }
+        content = sb.substring(0, length);
+        for (int i = 0; i < DOCUMENTS; i++) {
+            store.writeText(name(i), content);
+            residency.markPersisted(name(i), residency.put(name(i), content));
+        }
+    }
+
+    // Overwritten documents leave garbage behind, reclaimed between iterations
+    @TearDown(Level.Iteration)
+    public void compact() throws IOException {
+        store.compactIfNeeded();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void storeWrite() throws IOException {
+        store.writeText(name(next++), content);
+    }
+
+    @Benchmark
+    public String storeRead() throws IOException {
+        return store.readText(name(next++));
+    }
+
+    @Benchmark
+    public long residencyPut() {
+        return residency.put(name(next++), content);
+    }
+
+    @Benchmark
+    public CharSequence residencyGet() throws IOException {
+        return residency.get(name(next++));
+    }
+
+    private static String name(int index) {
+        return "document" + (index % DOCUMENTS) + ".txt";
+    }
+}
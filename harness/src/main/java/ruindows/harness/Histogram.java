@@ -0,0 +1,54 @@
+package ruindows.harness;
+
+import java.util.Arrays;
+
+// Keeps every sample, the counts in a scenario are small enough
+final class Histogram {
+
+    private double[] samples = new double[64];
+    private int count = 0;
+
+    void add(double sample) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = sample;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    double total() {
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += samples[i];
+        }
+        return total;
+    }
+
+    // Nearest-rank percentile, 0 when empty
+    double percentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        double[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p / 100 * count);
+        return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+
+    void writeJson(StringBuilder out) {
+        out.append("{\"count\": ").append(count)
+                .append(", \"mean\": ").append(round(count == 0 ? 0 : total() / count))
+                .append(", \"p50\": ").append(round(percentile(50)))
+                .append(", \"p95\": ").append(round(percentile(95)))
+                .append(", \"p99\": ").append(round(percentile(99)))
+                .append(", \"max\": ").append(round(percentile(100)))
+                .append('}');
+    }
+
+    static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
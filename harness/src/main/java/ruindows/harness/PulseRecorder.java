@@ -0,0 +1,78 @@
+package ruindows.harness;
+
+import javafx.animation.AnimationTimer;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Scene;
+import javafx.stage.Window;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+// Measures FX pulses. An animation timer runs first in every pulse, and the
+// scenes of all windows report when their layout is done, so the time from
+// the one to the last of the other is the pulse's work on the FX thread:
+// animations, CSS and layout. The time between two pulses also includes
+// what held up the FX thread in between, such as event handlers.
+final class PulseRecorder {
+
+    private final Set<Scene> scenes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Runnable layoutDone = () -> lastLayoutNanos = System.nanoTime();
+    private volatile long completedPulses = 0;
+    private long pulseStartNanos = 0;
+    private long lastLayoutNanos = 0;
+    private Histogram pulseMillis = new Histogram();
+    private Histogram intervalMillis = new Histogram();
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            long start = System.nanoTime();
+            if (pulseStartNanos != 0) {
+                pulseMillis.add(Math.max(0, lastLayoutNanos - pulseStartNanos) / 1e6);
+                intervalMillis.add((start - pulseStartNanos) / 1e6);
+                completedPulses++;
+            }
+            pulseStartNanos = start;
+            lastLayoutNanos = start;
+        }
+    };
+
+    // Only called on the FX thread
+    void start() {
+        for (Window window : Window.getWindows()) {
+            watch(window);
+        }
+        Window.getWindows().addListener((ListChangeListener<Window>) change -> {
+            while (change.next()) {
+                for (Window window : change.getAddedSubList()) {
+                    watch(window);
+                }
+            }
+        });
+        timer.start();
+    }
+
+    private void watch(Window window) {
+        attach(window.getScene());
+        window.sceneProperty().addListener((obs, oldVal, newVal) -> attach(newVal));
+    }
+
+    private void attach(Scene scene) {
+        if (scene != null && scenes.add(scene)) {
+            scene.addPostLayoutPulseListener(layoutDone);
+        }
+    }
+
+    long getCompletedPulses() {
+        return completedPulses;
+    }
+
+    // Only called on the FX thread, returns what was recorded since the last call
+    Histogram[] takeHistograms() {
+        Histogram[] taken = {pulseMillis, intervalMillis};
+        pulseMillis = new Histogram();
+        intervalMillis = new Histogram();
+        return taken;
+    }
+}
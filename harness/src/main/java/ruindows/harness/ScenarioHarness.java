@@ -0,0 +1,352 @@
+package ruindows.harness;
+
+import javafx.application.Platform;
+import javafx.scene.control.ButtonBase;
+import javafx.scene.control.DialogPane;
+import javafx.scene.control.Menu;
+import javafx.scene.control.MenuBar;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.PasswordField;
+import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import ruindows.DesktopView;
+import ruindows.Main;
+import ruindows.RopeEditor;
+import ruindows.TiledImageView;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Runs scripted user journeys against the real Main on the headless Monocle
+// toolkit and writes per-step latency, pulse times, peak heap and node
+// counts as JSON. Each journey only uses what a user could do: typing,
+// clicking buttons and menu items, opening shortcuts and answering dialogs.
+//
+// Options are given as key=value: output (the JSON file), notepads and files
+// (how many Notepads to open and files to save). The store lives in a fresh
+// temporary directory unless ruindows.home is set.
+public final class ScenarioHarness {
+
+    private static final String PASSWORD = "password123";
+    private static final String[] URLS = {"RUtube.net", "RUtify.net", "stockimages.net", "unknown.net"};
+
+    private final ScenarioReport report = new ScenarioReport();
+    private final PulseRecorder pulses = new PulseRecorder();
+    private final UiDriver ui = new UiDriver(pulses);
+    private final int notepads;
+    private final int files;
+    private Main main;
+    private Stage primaryStage;
+    private DesktopView desktop;
+    private boolean failed = false;
+
+    private interface Body {
+        void run(ScenarioReport.Step step) throws Exception;
+    }
+
+    private ScenarioHarness(int notepads, int files) {
+        this.notepads = notepads;
+        this.files = files;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split < 0) {
+                throw new IllegalArgumentException("Options are key=value, got " + arg);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        Path output = Paths.get(options.getOrDefault("output", "scenario-metrics.json"));
+        ScenarioHarness harness = new ScenarioHarness(Integer.parseInt(options.getOrDefault("notepads", "100")),
+                Integer.parseInt(options.getOrDefault("files", "10000")));
+
+        setDefault("glass.platform", "Monocle");
+        setDefault("monocle.platform", "Headless");
+        setDefault("prism.order", "sw");
+        setDefault("java.awt.headless", "true");
+        if (System.getProperty("ruindows.home") == null) {
+            System.setProperty("ruindows.home", Files.createTempDirectory("ruindows-scenario").toString());
+        }
+
+        Platform.startup(() -> { });
+        Platform.setImplicitExit(false);
+        harness.runAll();
+        harness.report.write(output);
+        System.out.println("Scenario metrics written to " + output.toAbsolutePath());
+        System.exit(harness.report.hasErrors() ? 1 : 0);
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private void runAll() {
+        report.putEnvironment("java", System.getProperty("java.version"));
+        report.putEnvironment("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        report.putEnvironment("processors", Runtime.getRuntime().availableProcessors());
+        report.putEnvironment("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        report.putEnvironment("notepads", notepads);
+        report.putEnvironment("files", files);
+
+        step("start", step -> measure(step, () -> {
+            main = ui.call(() -> {
+                pulses.start();
+                Main app = new Main();
+                primaryStage = new Stage();
+                app.start(primaryStage);
+                return app;
+            });
+        }));
+        step("login", this::login);
+        step("openNotepads", this::openNotepads);
+        step("saveFiles", this::saveFiles);
+        step("closeNotepads", step -> closeAll(step, "Notepad"));
+        step("browse", this::browse);
+        step("browseBack", this::browseBack);
+        step("downloadImages", this::downloadImages);
+        step("photoEditorZoom", this::zoomPhoto);
+        step("closeApps", step -> closeAll(step, null));
+        if (main == null) {
+            return;
+        }
+        report.putStartup(main.getStartupTimer().getMarks());
+        try {
+            ui.run(main::stop);
+        } catch (RuntimeException e) {
+            System.err.println("Could not stop cleanly: " + e.getMessage());
+        }
+    }
+
+    private void login(ScenarioReport.Step step) {
+        measure(step, () -> {
+            ui.run(() -> {
+                UiDriver.find(primaryStage, PasswordField.class, f -> true).setText(PASSWORD);
+                UiDriver.button(primaryStage, "Login").fire();
+            });
+            // The desktop may still be in the making, then it is shown once it is ready
+            ui.waitUntil("the desktop", () -> UiDriver.find(primaryStage, DesktopView.class, d -> true) != null);
+        });
+        desktop = ui.call(() -> UiDriver.find(primaryStage, DesktopView.class, d -> true));
+    }
+
+    private void openNotepads(ScenarioReport.Step step) {
+        for (int i = 0; i < notepads; i++) {
+            measure(step, () -> ui.run(() -> openShortcut("Notepad")));
+        }
+    }
+
+    private void saveFiles(ScenarioReport.Step step) {
+        Stage notepad = ui.call(() -> UiDriver.stage("Notepad"));
+        if (notepad == null) {
+            ui.run(() -> openShortcut("Notepad"));
+            notepad = ui.call(() -> UiDriver.stage("Notepad"));
+        }
+        Stage stage = notepad;
+        RopeEditor editor = ui.call(() -> UiDriver.find(stage, RopeEditor.class, e -> true));
+        MenuItem saveItem = ui.call(() -> menuItem(stage, "File", "Save"));
+        for (int i = 0; i < files; i++) {
+            String name = "scenario" + i;
+            ui.run(() -> editor.setDocument("Scenario file " + name + "\nwith a second line"));
+            measure(step, () -> {
+                // Saving asks for a name and then confirms, both in modal dialogs
+                ui.post(saveItem::fire);
+                answer("Save File", name);
+                answer("Success", null);
+            });
+        }
+    }
+
+    private void browse(ScenarioReport.Step step) {
+        ui.run(() -> openShortcut("ChRUme"));
+        for (String url : URLS) {
+            measure(step, () -> navigate(url));
+        }
+    }
+
+    // Every page comes out of the tab's page cache
+    private void browseBack(ScenarioReport.Step step) {
+        for (int i = 1; i < URLS.length; i++) {
+            measure(step, () -> ui.run(() -> UiDriver.button(UiDriver.stage("ChRUme"), "<").fire()));
+        }
+    }
+
+    private void downloadImages(ScenarioReport.Step step) {
+        navigate("stockimages.net");
+        List<ButtonBase> buttons = ui.call(() -> {
+            List<ButtonBase> found = new ArrayList<>();
+            for (ButtonBase button : UiDriver.findAll(UiDriver.stage("ChRUme").getScene().getRoot(),
+                    ButtonBase.class, new ArrayList<>())) {
+                if ("Download".equals(button.getText())) {
+                    found.add(button);
+                }
+            }
+            return found;
+        });
+        for (int i = 0; i < buttons.size(); i++) {
+            ButtonBase button = buttons.get(i);
+            String name = "download" + i;
+            int before = ui.call(desktop::size);
+            measure(step, () -> {
+                ui.post(button::fire);
+                answer("Download Image", name);
+                // Done once the transfer has finished and the shortcut is on the desktop
+                ui.waitUntil(name + " to download", () -> {
+                    if (UiDriver.dialog("Error") != null) {
+                        throw new IllegalStateException("Download of " + name + " failed");
+                    }
+                    return desktop.size() > before;
+                });
+            });
+        }
+    }
+
+    private void zoomPhoto(ScenarioReport.Step step) {
+        String name = "download0.jpg";
+        measure(step, () -> {
+            ui.run(() -> openShortcut(name));
+            ui.waitUntil("the image pyramid", () -> {
+                TiledImageView view = UiDriver.find(UiDriver.stage(name), TiledImageView.class, v -> true);
+                return view != null && view.getRaster() != null;
+            });
+        });
+        Slider zoom = ui.call(() -> UiDriver.find(UiDriver.stage(name), Slider.class, s -> s.getMax() == 3.0));
+        for (int i = 0; i <= 40; i++) {
+            // Out to the smallest zoom and back in to the largest
+            double value = i <= 10 ? 1.0 - i * 0.09 : 0.1 + (i - 10) * (2.9 / 30);
+            measure(step, () -> ui.run(() -> zoom.setValue(value)));
+        }
+    }
+
+    // Closes the windows with this title, or all but the desktop when null
+    private void closeAll(ScenarioReport.Step step, String title) {
+        List<Stage> stages = ui.call(() -> {
+            List<Stage> found = new ArrayList<>();
+            for (Window window : Window.getWindows()) {
+                if (window instanceof Stage && window != primaryStage && window.isShowing()
+                        && (title == null || title.equals(((Stage) window).getTitle()))) {
+                    found.add((Stage) window);
+                }
+            }
+            return found;
+        });
+        for (Stage stage : stages) {
+            measure(step, () -> ui.run(stage::close));
+        }
+    }
+
+    private void navigate(String url) {
+        ui.run(() -> {
+            Stage chrome = UiDriver.stage("ChRUme");
+            UiDriver.find(chrome, TextField.class, f -> "Enter URL...".equals(f.getPromptText())).setText(url);
+            UiDriver.button(chrome, "Search").fire();
+        });
+    }
+
+    // Only called on the FX thread
+    private void openShortcut(String name) {
+        int index = desktop.indexOf(name);
+        if (index < 0) {
+            throw new IllegalStateException("No shortcut named " + name);
+        }
+        desktop.get(index).open();
+    }
+
+    private static MenuItem menuItem(Stage stage, String menuText, String itemText) {
+        MenuBar bar = UiDriver.find(stage, MenuBar.class, b -> true);
+        for (Menu menu : bar.getMenus()) {
+            for (MenuItem item : menu.getItems()) {
+                if (menuText.equals(menu.getText()) && itemText.equals(item.getText())) {
+                    return item;
+                }
+            }
+        }
+        throw new IllegalStateException("No menu item " + menuText + " > " + itemText);
+    }
+
+    // Waits for the dialog, then types the text if any and confirms. Posted,
+    // since confirming may show the next dialog and wait for it in turn.
+    private void answer(String title, String text) {
+        ui.waitUntil("the " + title + " dialog", () -> UiDriver.dialog(title) != null);
+        ui.post(() -> {
+            DialogPane dialog = UiDriver.dialog(title);
+            UiDriver.answer(dialog, text);
+        });
+        ui.waitUntil("the " + title + " dialog to close", () -> UiDriver.dialog(title) == null);
+    }
+
+    private void step(String name, Body body) {
+        if (failed) {
+            return;
+        }
+        ScenarioReport.Step step = new ScenarioReport.Step(name);
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        if (main != null) {
+            ui.call(pulses::takeHistograms);
+        }
+
+        long start = System.nanoTime();
+        try {
+            body.run(step);
+        } catch (Exception | AssertionError e) {
+            step.error = e.toString();
+            failed = true;
+            e.printStackTrace();
+        }
+        step.totalMillis = (System.nanoTime() - start) / 1e6;
+
+        for (MemoryPoolMXBean pool : heapPools) {
+            step.peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+        step.heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        try {
+            ui.run(() -> {
+                Histogram[] taken = pulses.takeHistograms();
+                step.pulseMillis = taken[0];
+                step.pulseIntervalMillis = taken[1];
+                for (Window window : Window.getWindows()) {
+                    if (window.isShowing() && window.getScene() != null) {
+                        step.windows++;
+                        step.nodes += UiDriver.countNodes(window.getScene().getRoot());
+                    }
+                }
+                if (desktop != null) {
+                    step.desktopShortcuts = desktop.size();
+                    step.desktopCells = desktop.getCellCount();
+                }
+            });
+        } catch (RuntimeException e) {
+            // A hung UI thread is reported by the step itself
+            failed = true;
+        }
+        report.add(step);
+        System.out.println(name + ": " + step.latencyMillis.getCount() + " operations in "
+                + Math.round(step.totalMillis) + " ms" + (step.error != null ? ", failed: " + step.error : ""));
+    }
+
+    private void measure(ScenarioReport.Step step, Runnable operation) {
+        long start = System.nanoTime();
+        operation.run();
+        ui.settle();
+        step.latencyMillis.add((System.nanoTime() - start) / 1e6);
+    }
+}
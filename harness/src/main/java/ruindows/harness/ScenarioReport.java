@@ -0,0 +1,114 @@
+package ruindows.harness;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Results of one scenario run, written as JSON
+final class ScenarioReport {
+
+    static final class Step {
+        final String name;
+        final Histogram latencyMillis = new Histogram();
+        Histogram pulseMillis = new Histogram();
+        Histogram pulseIntervalMillis = new Histogram();
+        double totalMillis;
+        long peakHeapBytes;
+        long heapUsedBytes;
+        int windows;
+        int nodes;
+        int desktopShortcuts;
+        int desktopCells;
+        String error;
+
+        Step(String name) {
+            this.name = name;
+        }
+    }
+
+    private final Map<String, Object> environment = new LinkedHashMap<>();
+    private final Map<String, Long> startup = new LinkedHashMap<>();
+    private final List<Step> steps = new ArrayList<>();
+
+    void putEnvironment(String key, Object value) {
+        environment.put(key, value);
+    }
+
+    void putStartup(Map<String, Long> phases) {
+        startup.putAll(phases);
+    }
+
+    void add(Step step) {
+        steps.add(step);
+    }
+
+    boolean hasErrors() {
+        return steps.stream().anyMatch(step -> step.error != null);
+    }
+
+    void write(Path file) throws IOException {
+        StringBuilder out = new StringBuilder("{\n  \"environment\": {");
+        String separator = "";
+        for (Map.Entry<String, Object> e : environment.entrySet()) {
+            out.append(separator).append('\n').append("    ").append(quote(e.getKey())).append(": ");
+            Object value = e.getValue();
+            out.append(value instanceof Number ? value.toString() : quote(String.valueOf(value)));
+            separator = ",";
+        }
+        out.append("\n  },\n  \"startupMillis\": {");
+        separator = "";
+        for (Map.Entry<String, Long> e : startup.entrySet()) {
+            out.append(separator).append('\n').append("    ").append(quote(e.getKey())).append(": ").append(e.getValue());
+            separator = ",";
+        }
+        out.append("\n  },\n  \"steps\": [");
+        separator = "";
+        for (Step step : steps) {
+            out.append(separator).append("\n    {\"name\": ").append(quote(step.name))
+                    .append(", \"operations\": ").append(step.latencyMillis.getCount())
+                    .append(", \"totalMillis\": ").append(Histogram.round(step.totalMillis))
+                    .append(",\n     \"latencyMillis\": ");
+            step.latencyMillis.writeJson(out);
+            out.append(",\n     \"pulseMillis\": ");
+            step.pulseMillis.writeJson(out);
+            out.append(",\n     \"pulseIntervalMillis\": ");
+            step.pulseIntervalMillis.writeJson(out);
+            out.append(",\n     \"peakHeapBytes\": ").append(step.peakHeapBytes)
+                    .append(", \"heapUsedBytes\": ").append(step.heapUsedBytes)
+                    .append(", \"windows\": ").append(step.windows)
+                    .append(", \"nodes\": ").append(step.nodes)
+                    .append(", \"desktopShortcuts\": ").append(step.desktopShortcuts)
+                    .append(", \"desktopCells\": ").append(step.desktopCells);
+            if (step.error != null) {
+                out.append(",\n     \"error\": ").append(quote(step.error));
+            }
+            out.append('}');
+            separator = ",";
+        }
+        out.append("\n  ]\n}\n");
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.write(file, out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String quote(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
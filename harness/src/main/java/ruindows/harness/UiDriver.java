@@ -0,0 +1,177 @@
+package ruindows.harness;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.ButtonBase;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.DialogPane;
+import javafx.scene.control.TextField;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+// Drives the real UI from the harness thread. Every query and action runs
+// on the FX thread; actions that open a modal dialog are posted without
+// waiting, since they only return once the dialog is closed.
+final class UiDriver {
+
+    private static final long TIMEOUT_MILLIS = 60_000;
+    private static final long POLL_MILLIS = 2;
+
+    private final PulseRecorder pulses;
+
+    UiDriver(PulseRecorder pulses) {
+        this.pulses = pulses;
+    }
+
+    <T> T call(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        try {
+            return result.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("UI action failed", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("UI thread did not respond within " + TIMEOUT_MILLIS + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    // For actions that show a dialog and wait for it
+    void post(Runnable task) {
+        Platform.runLater(task);
+    }
+
+    // Waits for a whole pulse that started after everything queued so far, so
+    // the effect of the last action has been laid out and handed to rendering
+    void settle() {
+        run(() -> { });
+        long target = pulses.getCompletedPulses() + 2;
+        Platform.runLater(Platform::requestNextPulse);
+        waitFor("a pulse", () -> pulses.getCompletedPulses() >= target, false);
+    }
+
+    // Polls the condition on the FX thread
+    void waitUntil(String what, BooleanSupplier condition) {
+        waitFor(what, condition, true);
+    }
+
+    private void waitFor(String what, BooleanSupplier condition, boolean onFxThread) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!(onFxThread ? call(condition::getAsBoolean) : condition.getAsBoolean())) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Timed out waiting for " + what);
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // The following are only called on the FX thread
+
+    static List<Stage> stages(String title) {
+        List<Stage> stages = new ArrayList<>();
+        for (Window window : Window.getWindows()) {
+            if (window instanceof Stage && window.isShowing() && title.equals(((Stage) window).getTitle())) {
+                stages.add((Stage) window);
+            }
+        }
+        return stages;
+    }
+
+    static Stage stage(String title) {
+        List<Stage> stages = stages(title);
+        return stages.isEmpty() ? null : stages.get(stages.size() - 1);
+    }
+
+    static <T extends Node> T find(Node root, Class<T> type, Predicate<T> filter) {
+        if (type.isInstance(root) && filter.test(type.cast(root))) {
+            return type.cast(root);
+        }
+        if (root instanceof Parent) {
+            for (Node child : ((Parent) root).getChildrenUnmodifiable()) {
+                T found = find(child, type, filter);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    static <T extends Node> T find(Stage stage, Class<T> type, Predicate<T> filter) {
+        return stage == null || stage.getScene() == null ? null : find(stage.getScene().getRoot(), type, filter);
+    }
+
+    static <T extends Node> List<T> findAll(Node root, Class<T> type, List<T> found) {
+        if (type.isInstance(root)) {
+            found.add(type.cast(root));
+        }
+        if (root instanceof Parent) {
+            for (Node child : ((Parent) root).getChildrenUnmodifiable()) {
+                findAll(child, type, found);
+            }
+        }
+        return found;
+    }
+
+    static ButtonBase button(Stage stage, String text) {
+        return find(stage, ButtonBase.class, b -> text.equals(b.getText()));
+    }
+
+    // Dialogs and alerts are shown in stages whose root is a DialogPane
+    static DialogPane dialog(String title) {
+        Stage stage = stage(title);
+        return stage != null && stage.getScene().getRoot() instanceof DialogPane
+                ? (DialogPane) stage.getScene().getRoot()
+                : null;
+    }
+
+    // Types into the dialog's text field, if it has one, and confirms it
+    static void answer(DialogPane dialog, String text) {
+        if (text != null) {
+            TextField field = find(dialog, TextField.class, f -> true);
+            field.setText(text);
+        }
+        ((ButtonBase) dialog.lookupButton(ButtonType.OK)).fire();
+    }
+
+    static int countNodes(Node node) {
+        int count = 1;
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                count += countNodes(child);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,307 @@
+package ruindows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Autosave for open documents.
+//
+// Every edit is queued as a small delta and once a second the queue is
+// appended to journal/<name>.jnl on the store thread. When a journal grows
+// past a threshold, or has been around for a while, the latest snapshot is
+// saved through the writer, like any other save, and the journal starts
+// over. A journal names the stored version it applies to, so on startup it is
+// only replayed on top of that exact version.
+//
+// Edits are numbered as they are recorded. A save from the window rebases the
+// session onto the saved text, and any snapshot recorded before that is
+// superseded: it is not folded into the store, and a fold already under way
+// is reported with its number so the caller can tell it is out of date.
+public class AutosaveJournal {
+
+    private static final int JOURNAL_MAGIC = 0x52554A4E; // "RUJN"
+    private static final int HEADER_SIZE = 12;
+    private static final long FLUSH_MILLIS = 1000;
+    private static final long COMPACT_BYTES = 256 * 1024;
+    private static final long COMPACT_MILLIS = 60 * 1000;
+
+    private final Path directory;
+    private final FileStore store;
+    private final Writer writer;
+    private final ScheduledExecutorService executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // Saves a compacted document on the executor; it is in the store once this
+    // returns. sequence is the number of the last edit it holds, see isCurrent.
+    public interface Writer {
+        void write(String name, CharSequence content, long sequence) throws IOException;
+    }
+
+    private static class Delta {
+        final int start;
+        final int removedLength;
+        final CharSequence inserted;
+        final Rope after;
+        final long sequence;
+
+        Delta(int start, int removedLength, CharSequence inserted, Rope after, long sequence) {
+            this.start = start;
+            this.removedLength = removedLength;
+            this.inserted = inserted;
+            this.after = after;
+            this.sequence = sequence;
+        }
+    }
+
+    public AutosaveJournal(Path directory, FileStore store, ScheduledExecutorService executor, Writer writer)
+            throws IOException {
+        this.directory = directory;
+        this.store = store;
+        this.writer = writer;
+        this.executor = executor;
+        Files.createDirectories(directory);
+        executor.scheduleWithFixedDelay(this::flushAll, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Replays journals left behind by a crash, call before anything reads the store;
+    // nothing holds the documents yet, so they are written to the store directly
+    public int recover() throws IOException {
+        int recovered = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jnl")) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - ".jnl".length());
+                if (replay(path, name)) {
+                    recovered++;
+                }
+                Files.delete(path);
+            }
+        }
+        return recovered;
+    }
+
+    private boolean replay(Path path, String name) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (data.remaining() < HEADER_SIZE || data.getInt() != JOURNAL_MAGIC) {
+            return false;
+        }
+        int baseCrc = data.getInt();
+        int baseSize = data.getInt();
+        if (!store.contains(name) || store.checksum(name) != baseCrc || store.size(name) != baseSize) {
+            // Already compacted into the store, or the base is gone
+            return false;
+        }
+
+        Rope document = Rope.of(store.readText(name));
+        int applied = 0;
+        while (data.remaining() >= 16) {
+            int recordStart = data.position();
+            int start = data.getInt();
+            int removedLength = data.getInt();
+            int byteLength = data.getInt();
+            if (byteLength < 0 || data.remaining() < byteLength + 4) {
+                break;
+            }
+            byte[] bytes = new byte[byteLength];
+            data.get(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(data.array(), recordStart, 12 + byteLength);
+            if ((int) crc.getValue() != data.getInt()
+                    || start < 0 || removedLength < 0 || start + removedLength > document.length()) {
+                break;
+            }
+            document = document.replace(start, start + removedLength, new String(bytes, StandardCharsets.UTF_8));
+            applied++;
+        }
+        if (applied > 0) {
+            store.writeText(name, document);
+        }
+        return applied > 0;
+    }
+
+    // The store must already hold base, or have its write queued on the executor
+    public Session open(String name) {
+        Session session = new Session(name);
+        sessions.put(name, session);
+        executor.execute(() -> session.reset());
+        return session;
+    }
+
+    public boolean isOpen(String name) {
+        return sessions.containsKey(name);
+    }
+
+    // On the FX thread, whether the edit numbered sequence is still the newest
+    // text of the open document, that is no save or close came after it
+    public boolean isCurrent(String name, long sequence) {
+        Session session = sessions.get(name);
+        return session != null && sequence > session.rebasedAt;
+    }
+
+    private void flushAll() {
+        for (Session session : sessions.values()) {
+            try {
+                session.flush(false);
+            } catch (IOException e) {
+                System.err.println("Autosave failed for " + session.name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Writes every open document to the store, used when the application exits
+    public void shutdown() {
+        executor.execute(() -> {
+            for (Session session : sessions.values()) {
+                try {
+                    session.flush(true);
+                    session.delete();
+                } catch (IOException e) {
+                    System.err.println("Autosave failed for " + session.name + ": " + e.getMessage());
+                }
+            }
+            sessions.clear();
+        });
+    }
+
+    public class Session {
+
+        private final String name;
+        private final ConcurrentLinkedQueue<Delta> pending = new ConcurrentLinkedQueue<>();
+        // Edits recorded so far, and how many of them the last save covered
+        private long recorded = 0;
+        private volatile long rebasedAt = 0;
+
+        // Only touched on the executor
+        private FileChannel channel;
+        private long journalBytes = 0;
+        private long lastCompaction = System.currentTimeMillis();
+        private Rope latest;
+        private long latestSequence;
+
+        private Session(String name) {
+            this.name = name;
+        }
+
+        // Called on the FX thread for every edit
+        public void record(int start, int removedLength, CharSequence inserted, Rope after) {
+            pending.add(new Delta(start, removedLength, inserted, after, ++recorded));
+        }
+
+        // The caller has just queued a full save of the text after the last
+        // recorded edit, drop what it covers. A flush that runs before the
+        // reset below no longer folds those edits into the store.
+        public void rebase() {
+            rebasedAt = recorded;
+            pending.clear();
+            executor.execute(this::reset);
+        }
+
+        // Stops journaling; the caller saves the final content first if it changed
+        public void close() {
+            sessions.remove(name, this);
+            pending.clear();
+            executor.execute(() -> {
+                try {
+                    delete();
+                } catch (IOException e) {
+                    System.err.println("Could not remove journal for " + name + ": " + e.getMessage());
+                }
+            });
+        }
+
+        private void flush(boolean compact) throws IOException {
+            Delta delta;
+            ByteBuffer buffer = null;
+            while ((delta = pending.poll()) != null) {
+                if (delta.sequence <= rebasedAt) {
+                    // Polled just before a rebase, the save covers it
+                    continue;
+                }
+                if (channel == null) {
+                    reset();
+                }
+                buffer = encode(delta);
+                while (buffer.hasRemaining()) {
+                    journalBytes += channel.write(buffer);
+                }
+                latest = delta.after;
+                latestSequence = delta.sequence;
+            }
+            if (buffer != null) {
+                channel.force(false);
+            }
+            if (latest != null && latestSequence <= rebasedAt) {
+                // Saved from the window since, the reset queued by rebase follows
+                latest = null;
+            }
+
+            long now = System.currentTimeMillis();
+            boolean due = journalBytes > 0 && now - lastCompaction >= COMPACT_MILLIS;
+            if (latest != null && (compact || due || journalBytes >= COMPACT_BYTES)) {
+                // Fold the journal into the stored document and start over
+                writer.write(name, latest, latestSequence);
+                latest = null;
+                reset();
+            }
+        }
+
+        private void reset() {
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(path(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(JOURNAL_MAGIC);
+                header.putInt(store.contains(name) ? store.checksum(name) : 0);
+                header.putInt((int) Math.max(0, store.size(name)));
+                header.flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.position(HEADER_SIZE);
+                channel.force(true);
+                journalBytes = 0;
+                latest = null;
+                lastCompaction = System.currentTimeMillis();
+            } catch (IOException e) {
+                System.err.println("Could not reset journal for " + name + ": " + e.getMessage());
+            }
+        }
+
+        private void delete() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            Files.deleteIfExists(path());
+        }
+
+        private Path path() {
+            return directory.resolve(name + ".jnl");
+        }
+    }
+
+    private static ByteBuffer encode(Delta delta) {
+        byte[] bytes = delta.inserted.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + bytes.length + 4);
+        buffer.putInt(delta.start);
+        buffer.putInt(delta.removedLength);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+}
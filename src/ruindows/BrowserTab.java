@@ -0,0 +1,219 @@
+package ruindows;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+import javafx.scene.layout.StackPane;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+// One ChRUme tab with its own back/forward history.
+//
+// Built pages are kept by URL in a page cache shared by all tabs, so going
+// back or entering a recent URL again shows the existing page instead of
+// building it anew. A page that leaves the view, by navigating or by
+// selecting another tab, is suspended and resumed when it is shown again, or
+// built anew if it cannot be or was evicted meanwhile. Pages still cached
+// when the tab closes are released.
+public class BrowserTab extends Tab {
+
+    public interface PageFactory {
+        Node build(String url, Page page);
+    }
+
+    public interface PageHandler {
+        void handle(Page page);
+    }
+
+    // False if the page cannot be shown as it was, e.g. its player is gone
+    public interface PageResumer {
+        boolean resume(Page page);
+    }
+
+    // A built page, also the owner of the media and images it uses
+    public static class Page {
+        private final String url;
+        private Node root;
+
+        Page(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public Node getRoot() {
+            return root;
+        }
+    }
+
+    private final PageCache cache;
+    private final PageFactory factory;
+    private final PageHandler suspend;
+    private final PageResumer resume;
+    // This tab's pages in the shared cache, by URL
+    private final Map<String, Page> pages = new HashMap<>();
+    private final StackPane content = new StackPane();
+    private final Deque<String> back = new ArrayDeque<>();
+    private final Deque<String> forward = new ArrayDeque<>();
+    private final StringProperty url = new SimpleStringProperty("");
+    private final BooleanProperty canGoBack = new SimpleBooleanProperty(false);
+    private final BooleanProperty canGoForward = new SimpleBooleanProperty(false);
+    // The page shown, null once it was evicted while the tab was in the background
+    private Page current;
+    private boolean suspended = false;
+
+    public BrowserTab(PageCache cache, PageFactory factory, PageHandler suspend, PageResumer resume) {
+        super("New Tab");
+        this.cache = cache;
+        this.factory = factory;
+        this.suspend = suspend;
+        this.resume = resume;
+        content.setStyle("-fx-background-color: white;");
+        setContent(content);
+        show("");
+        setOnClosed(e -> dispose());
+    }
+
+    // Opens url as a new history entry, dropping anything ahead of the current one
+    public void navigate(String address) {
+        if (address.equals(url.get()) && current != null) {
+            return;
+        }
+        back.push(url.get());
+        forward.clear();
+        show(address);
+    }
+
+    public void goBack() {
+        if (!back.isEmpty()) {
+            forward.push(url.get());
+            show(back.pop());
+        }
+    }
+
+    public void goForward() {
+        if (!forward.isEmpty()) {
+            back.push(url.get());
+            show(forward.pop());
+        }
+    }
+
+    private void show(String address) {
+        if (current != null && !suspended) {
+            suspend.handle(current);
+        }
+        display(address);
+        url.set(address);
+        setText(address.isEmpty() ? "New Tab" : address);
+        canGoBack.set(!back.isEmpty());
+        canGoForward.set(!forward.isEmpty());
+    }
+
+    // Shows the cached page for address, resumed, or a new one
+    private void display(String address) {
+        Page page = pages.get(address);
+        if (page != null && !resume.resume(page)) {
+            pages.remove(address);
+            cache.remove(page);
+            page = null;
+        }
+        boolean built = page == null;
+        if (built) {
+            page = new Page(address);
+            page.root = factory.build(address, page);
+            pages.put(address, page);
+        }
+        // Shown before the cache sees it, so it is never the one evicted
+        current = page;
+        suspended = false;
+        if (built) {
+            cache.add(this, page);
+        } else {
+            cache.touch(page);
+        }
+        content.getChildren().setAll(page.root);
+    }
+
+    // Pauses the page shown, when another tab is selected
+    public void suspend() {
+        if (current != null && !suspended) {
+            suspend.handle(current);
+            suspended = true;
+        }
+    }
+
+    // Shows the page again when the tab is selected, rebuilding it if it was
+    // evicted or cannot be resumed
+    public void resume() {
+        if (!suspended) {
+            return;
+        }
+        if (current != null && resume.resume(current)) {
+            suspended = false;
+            cache.touch(current);
+            return;
+        }
+        if (current != null) {
+            pages.remove(current.url, current);
+            cache.remove(current);
+        }
+        display(url.get());
+    }
+
+    // Whether the page is on screen, which the cache must not evict
+    boolean isShowing(Page page) {
+        return page == current && !suspended;
+    }
+
+    // Called by the cache, which releases the page
+    void evicted(Page page) {
+        pages.remove(page.url, page);
+        if (page == current) {
+            current = null;
+        }
+    }
+
+    // Releases every cached page, called when the tab or its window closes
+    public void dispose() {
+        for (Page page : new ArrayList<>(pages.values())) {
+            cache.remove(page);
+        }
+        pages.clear();
+        content.getChildren().clear();
+        current = null;
+    }
+
+    public ReadOnlyStringProperty urlProperty() {
+        return url;
+    }
+
+    public ReadOnlyBooleanProperty canGoBackProperty() {
+        return canGoBack;
+    }
+
+    public ReadOnlyBooleanProperty canGoForwardProperty() {
+        return canGoForward;
+    }
+
+    public int getCachedPageCount() {
+        return pages.size();
+    }
+
+    // Every page kept by this tab, including the one shown
+    public Collection<Page> getCachedPages() {
+        return Collections.unmodifiableCollection(pages.values());
+    }
+}
@@ -0,0 +1,33 @@
+package ruindows;
+
+import javafx.scene.image.Image;
+
+import java.util.function.Supplier;
+
+// A single entry on the desktop. Only the shortcuts scrolled into view get a
+// cell in the scene graph, so this holds nothing but what a cell needs.
+public class DesktopShortcut {
+
+    private final String name;
+    private final Supplier<Image> icon;
+    private final Runnable action;
+
+    // The icon is only asked for when the shortcut scrolls into view
+    public DesktopShortcut(String name, Supplier<Image> icon, Runnable action) {
+        this.name = name;
+        this.icon = icon;
+        this.action = action;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Image getIcon() {
+        return icon.get();
+    }
+
+    public void open() {
+        action.run();
+    }
+}
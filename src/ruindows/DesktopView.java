@@ -0,0 +1,325 @@
+package ruindows;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.scene.shape.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Virtualized desktop. Shortcuts are laid out column by column like the old
+// GridPane, but only the cells that intersect the viewport exist as nodes and
+// they are recycled while scrolling. Typing while the desktop has focus jumps
+// to the first shortcut whose name starts with what was typed.
+public class DesktopView extends Region {
+
+    private static final double CELL_WIDTH = 80;
+    private static final double CELL_HEIGHT = 100;
+    private static final double GAP = 20;
+    private static final double PADDING = 20;
+    private static final long TYPE_TO_FIND_MILLIS = 1000;
+
+    private final int rowsPerColumn;
+    private final List<DesktopShortcut> shortcuts = new ArrayList<>();
+    private final Map<String, Integer> indexByName = new HashMap<>();
+    private final List<ShortcutCell> cells = new ArrayList<>();
+    private final Pane cellLayer = new Pane();
+    private final ScrollBar hbar = new ScrollBar();
+    private final ScrollBar vbar = new ScrollBar();
+    private final Rectangle clip = new Rectangle();
+    private int selectedIndex = -1;
+    private Function<String, String> prefixLookup = prefix -> null;
+    private final StringBuilder typed = new StringBuilder();
+    private long lastTyped = 0;
+
+    public DesktopView(int rowsPerColumn) {
+        this.rowsPerColumn = rowsPerColumn;
+
+        cellLayer.setManaged(false);
+        cellLayer.setClip(clip);
+        hbar.setOrientation(Orientation.HORIZONTAL);
+        vbar.setOrientation(Orientation.VERTICAL);
+        hbar.valueProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+        vbar.valueProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+
+        setOnScroll(e -> {
+            // Wheel scrolling moves across columns, since that is where the desktop grows
+            double delta = e.getDeltaX() != 0 ? e.getDeltaX() : e.getDeltaY();
+            if (hbar.isVisible()) {
+                hbar.setValue(clamp(hbar.getValue() - delta, hbar.getMin(), hbar.getMax()));
+            } else if (vbar.isVisible()) {
+                vbar.setValue(clamp(vbar.getValue() - e.getDeltaY(), vbar.getMin(), vbar.getMax()));
+            }
+            e.consume();
+        });
+
+        setFocusTraversable(true);
+        setOnMousePressed(e -> requestFocus());
+        setOnKeyTyped(e -> {
+            String character = e.getCharacter();
+            if (character.isEmpty() || Character.isISOControl(character.charAt(0))) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastTyped > TYPE_TO_FIND_MILLIS) {
+                typed.setLength(0);
+            }
+            lastTyped = now;
+            typed.append(character);
+            Integer index = indexByName.get(prefixLookup.apply(typed.toString()));
+            if (index != null) {
+                select(index);
+            }
+            e.consume();
+        });
+        setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER && selectedIndex >= 0) {
+                shortcuts.get(selectedIndex).open();
+                e.consume();
+            } else if (e.getCode() == KeyCode.ESCAPE) {
+                select(-1);
+            }
+        });
+
+        getChildren().addAll(cellLayer, hbar, vbar);
+    }
+
+    public void add(DesktopShortcut shortcut) {
+        indexByName.putIfAbsent(shortcut.getName(), shortcuts.size());
+        shortcuts.add(shortcut);
+        requestLayout();
+    }
+
+    public void addAll(Collection<DesktopShortcut> newShortcuts) {
+        for (DesktopShortcut shortcut : newShortcuts) {
+            indexByName.putIfAbsent(shortcut.getName(), shortcuts.size());
+            shortcuts.add(shortcut);
+        }
+        requestLayout();
+    }
+
+    public void clear() {
+        shortcuts.clear();
+        indexByName.clear();
+        selectedIndex = -1;
+        hbar.setValue(0);
+        vbar.setValue(0);
+        requestLayout();
+    }
+
+    public int size() {
+        return shortcuts.size();
+    }
+
+    public DesktopShortcut get(int index) {
+        return shortcuts.get(index);
+    }
+
+    // Index of the first shortcut with the given name, or -1
+    public int indexOf(String name) {
+        Integer index = indexByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    // Highlights a shortcut and scrolls it into view, -1 clears the selection
+    public void select(int index) {
+        selectedIndex = index;
+        if (index >= 0) {
+            scrollTo(index);
+        }
+        requestLayout();
+    }
+
+    public int getSelectedIndex() {
+        return selectedIndex;
+    }
+
+    // Maps what the user typed to the name of the shortcut to select
+    public void setPrefixLookup(Function<String, String> prefixLookup) {
+        this.prefixLookup = prefixLookup;
+    }
+
+    // Binds the visible cells again, e.g. after an icon changed
+    public void refresh() {
+        for (ShortcutCell cell : cells) {
+            cell.shortcut = null;
+        }
+        requestLayout();
+    }
+
+    // Number of cell nodes currently in the scene graph
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    public void scrollTo(int index) {
+        int column = index / rowsPerColumn;
+        double x = PADDING + column * (CELL_WIDTH + GAP);
+        double viewport = getWidth() - (vbar.isVisible() ? vbar.getWidth() : 0);
+        if (x < hbar.getValue()) {
+            hbar.setValue(clamp(x - PADDING, hbar.getMin(), hbar.getMax()));
+        } else if (x + CELL_WIDTH > hbar.getValue() + viewport) {
+            hbar.setValue(clamp(x + CELL_WIDTH + PADDING - viewport, hbar.getMin(), hbar.getMax()));
+        }
+    }
+
+    private double contentWidth() {
+        int columns = (shortcuts.size() + rowsPerColumn - 1) / rowsPerColumn;
+        return 2 * PADDING + Math.max(0, columns * (CELL_WIDTH + GAP) - GAP);
+    }
+
+    private double contentHeight() {
+        int rows = Math.min(rowsPerColumn, shortcuts.size());
+        return 2 * PADDING + Math.max(0, rows * (CELL_HEIGHT + GAP) - GAP);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        double contentWidth = contentWidth();
+        double contentHeight = contentHeight();
+
+        // Scroll bars
+        boolean needH = contentWidth > width;
+        boolean needV = contentHeight > height - (needH ? hbar.prefHeight(-1) : 0);
+        needH = contentWidth > width - (needV ? vbar.prefWidth(-1) : 0);
+        double barH = needH ? hbar.prefHeight(-1) : 0;
+        double barW = needV ? vbar.prefWidth(-1) : 0;
+        double viewWidth = width - barW;
+        double viewHeight = height - barH;
+
+        updateBar(hbar, needH, contentWidth, viewWidth);
+        updateBar(vbar, needV, contentHeight, viewHeight);
+        hbar.resizeRelocate(0, viewHeight, viewWidth, barH);
+        vbar.resizeRelocate(viewWidth, 0, barW, viewHeight);
+
+        cellLayer.resizeRelocate(0, 0, viewWidth, viewHeight);
+        clip.setWidth(viewWidth);
+        clip.setHeight(viewHeight);
+
+        // Visible range of columns and rows
+        double offsetX = needH ? hbar.getValue() : 0;
+        double offsetY = needV ? vbar.getValue() : 0;
+        double strideX = CELL_WIDTH + GAP;
+        double strideY = CELL_HEIGHT + GAP;
+        int firstColumn = Math.max(0, (int) Math.floor((offsetX - PADDING) / strideX));
+        int lastColumn = (int) Math.floor((offsetX + viewWidth - PADDING) / strideX);
+        int firstRow = Math.max(0, (int) Math.floor((offsetY - PADDING) / strideY));
+        int lastRow = Math.min(rowsPerColumn - 1, (int) Math.floor((offsetY + viewHeight - PADDING) / strideY));
+
+        int visibleColumns = Math.max(0, lastColumn - firstColumn + 1);
+        int visibleRows = Math.max(0, lastRow - firstRow + 1);
+        ensureCells(visibleColumns * visibleRows);
+
+        // Each cell keeps its slot as long as its shortcut stays visible, so
+        // scrolling only rebinds the columns that come into view
+        for (ShortcutCell cell : cells) {
+            cell.setVisible(false);
+        }
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                int index = column * rowsPerColumn + row;
+                if (index >= shortcuts.size()) {
+                    break;
+                }
+                int slot = (column % visibleColumns) * visibleRows + (row % visibleRows);
+                ShortcutCell cell = cells.get(slot);
+                cell.bind(shortcuts.get(index));
+                cell.setSelected(index == selectedIndex);
+                cell.setVisible(true);
+                cell.resizeRelocate(PADDING + column * strideX - offsetX, PADDING + row * strideY - offsetY,
+                        CELL_WIDTH, CELL_HEIGHT);
+            }
+        }
+    }
+
+    private void ensureCells(int count) {
+        while (cells.size() < count) {
+            ShortcutCell cell = new ShortcutCell();
+            cells.add(cell);
+            cellLayer.getChildren().add(cell);
+        }
+        while (cells.size() > count) {
+            ShortcutCell cell = cells.remove(cells.size() - 1);
+            cellLayer.getChildren().remove(cell);
+        }
+    }
+
+    private static void updateBar(ScrollBar bar, boolean needed, double content, double viewport) {
+        bar.setVisible(needed);
+        bar.setMin(0);
+        bar.setMax(Math.max(0, content - viewport));
+        bar.setVisibleAmount(viewport);
+        bar.setUnitIncrement(CELL_WIDTH + GAP);
+        bar.setBlockIncrement(Math.max(CELL_WIDTH + GAP, viewport));
+        if (!needed) {
+            bar.setValue(0);
+        } else if (bar.getValue() > bar.getMax()) {
+            bar.setValue(bar.getMax());
+        }
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // Recycled icon and label for one visible shortcut
+    private static class ShortcutCell extends VBox {
+
+        private final ImageView icon = new ImageView();
+        private final Label nameLabel = new Label();
+        private DesktopShortcut shortcut;
+        private boolean selected;
+
+        ShortcutCell() {
+            super(5);
+            setAlignment(Pos.CENTER);
+            setPadding(Insets.EMPTY);
+
+            icon.setFitWidth(48);
+            icon.setFitHeight(48);
+            icon.setPreserveRatio(true);
+
+            nameLabel.setStyle("-fx-text-fill: white; -fx-font-size: 10px; -fx-background-color: rgba(0,0,0,0.5); -fx-padding: 2;");
+            nameLabel.setWrapText(true);
+            nameLabel.setMaxWidth(80);
+
+            getChildren().addAll(icon, nameLabel);
+            setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && shortcut != null) {
+                    shortcut.open();
+                }
+            });
+        }
+
+        void bind(DesktopShortcut shortcut) {
+            if (this.shortcut == shortcut) {
+                return;
+            }
+            this.shortcut = shortcut;
+            icon.setImage(shortcut.getIcon());
+            nameLabel.setText(shortcut.getName());
+        }
+
+        void setSelected(boolean selected) {
+            if (this.selected == selected) {
+                return;
+            }
+            this.selected = selected;
+            setStyle(selected ? "-fx-background-color: rgba(255,255,255,0.3);" : "");
+        }
+    }
+}
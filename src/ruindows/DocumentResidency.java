@@ -0,0 +1,337 @@
+package ruindows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Keeps text documents in memory according to how recently they were used.
+//
+// Recently used documents stay as Strings. Once the budget is exceeded, or a
+// document has been idle for a while, it is deflated into a byte array. If
+// that is still too much, compressed documents that are already saved in the
+// file store are dropped and read back through the loader when needed again.
+//
+// The lock only guards the bookkeeping: documents are deflated and inflated
+// after it is released, so a caller on the FX thread never waits for another
+// thread's compression. A document being compressed can still be read as is.
+public class DocumentResidency {
+
+    public interface Loader {
+        CharSequence load(String name) throws IOException;
+    }
+
+    private static final long IDLE_MILLIS = 10 * 60 * 1000;
+
+    private final long budgetBytes;
+    private final Loader loader;
+
+    // Hot documents from least to most recently used, cold documents in the
+    // order they went cold
+    private final LinkedHashMap<String, Hot> hot = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Cold> cold = new LinkedHashMap<>();
+    // Taken out of hot and not compressed yet, no longer counted in hotBytes
+    private final Map<String, Hot> compressing = new HashMap<>();
+    private final Map<String, Long> versions = new HashMap<>();
+    private final Map<String, Long> persistedVersions = new HashMap<>();
+    private long hotBytes = 0;
+    private long coldBytes = 0;
+    private long nextVersion = 1;
+
+    // Statistics
+    private long compressions = 0;
+    private long rehydrations = 0;
+    private long reloads = 0;
+
+    private static class Hot {
+        final CharSequence content;
+        long lastAccess;
+
+        Hot(CharSequence content, long lastAccess) {
+            this.content = content;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static class Cold {
+        final byte[] compressed;
+        final int length;
+
+        Cold(byte[] compressed, int length) {
+            this.compressed = compressed;
+            this.length = length;
+        }
+    }
+
+    public DocumentResidency(long budgetBytes, Loader loader) {
+        this.budgetBytes = budgetBytes;
+        this.loader = loader;
+    }
+
+    // Returns a version to hand to markPersisted once the content is saved
+    public long put(String name, CharSequence content) {
+        long version;
+        List<Map.Entry<String, Hot>> victims;
+        synchronized (this) {
+            removeResident(name);
+            version = nextVersion++;
+            versions.put(name, version);
+            victims = promote(name, content);
+        }
+        compressAll(victims);
+        return version;
+    }
+
+    public synchronized void markPersisted(String name, long version) {
+        Long current = versions.get(name);
+        if (current != null && current == version) {
+            persistedVersions.put(name, version);
+        }
+    }
+
+    public CharSequence get(String name) throws IOException {
+        Cold compressed;
+        List<Map.Entry<String, Hot>> victims = null;
+        CharSequence content = null;
+        synchronized (this) {
+            Hot entry = hot.remove(name);
+            if (entry != null) {
+                entry.lastAccess = System.currentTimeMillis();
+                hot.put(name, entry);
+                return entry.content;
+            }
+            compressed = cold.get(name);
+            Hot pending = compressing.remove(name);
+            if (pending != null) {
+                // Taken back before it was compressed
+                content = pending.content;
+                victims = promote(name, content);
+            }
+        }
+        if (victims != null) {
+            compressAll(victims);
+            return content;
+        }
+
+        if (compressed != null) {
+            // Inflated without holding the lock, it only counts if the document did not change meanwhile
+            content = decompress(compressed);
+            synchronized (this) {
+                if (cold.remove(name, compressed)) {
+                    coldBytes -= compressed.compressed.length;
+                    rehydrations++;
+                    victims = promote(name, content);
+                }
+            }
+            if (victims == null) {
+                return get(name);
+            }
+            compressAll(victims);
+            return content;
+        }
+
+        // Not resident at all, read it back without holding the lock
+        if (loader == null) {
+            return null;
+        }
+        content = loader.load(name);
+        if (content == null) {
+            return null;
+        }
+        synchronized (this) {
+            Hot raced = hot.get(name);
+            if (raced != null) {
+                return raced.content;
+            }
+            if (!cold.containsKey(name) && !compressing.containsKey(name)) {
+                reloads++;
+                long version = nextVersion++;
+                versions.put(name, version);
+                persistedVersions.put(name, version);
+                victims = promote(name, content);
+            }
+        }
+        if (victims == null) {
+            return get(name);
+        }
+        compressAll(victims);
+        return content;
+    }
+
+    // The content if it is in memory, without counting as a use: a hot document
+    // keeps its place and a cold one is inflated into a copy that stays cold
+    public CharSequence peek(String name) {
+        Cold compressed;
+        synchronized (this) {
+            Hot entry = hot.get(name);
+            if (entry == null) {
+                entry = compressing.get(name);
+            }
+            if (entry != null) {
+                return entry.content;
+            }
+            compressed = cold.get(name);
+        }
+        return compressed == null ? null : decompress(compressed);
+    }
+
+    public synchronized boolean isResident(String name) {
+        return hot.containsKey(name) || cold.containsKey(name) || compressing.containsKey(name);
+    }
+
+    public synchronized void remove(String name) {
+        removeResident(name);
+        versions.remove(name);
+        persistedVersions.remove(name);
+    }
+
+    // Called with the lock held, returns what to compress once it is released
+    private List<Map.Entry<String, Hot>> promote(String name, CharSequence content) {
+        hot.put(name, new Hot(content, System.currentTimeMillis()));
+        hotBytes += cost(content);
+        return enforceBudget();
+    }
+
+    private void removeResident(String name) {
+        Hot previous = hot.remove(name);
+        if (previous != null) {
+            hotBytes -= cost(previous.content);
+        }
+        Cold previousCold = cold.remove(name);
+        if (previousCold != null) {
+            coldBytes -= previousCold.compressed.length;
+        }
+        compressing.remove(name);
+    }
+
+    // Called with the lock held, returns the least recently used documents to
+    // compress once it is released, keeping the latest one as a String
+    private List<Map.Entry<String, Hot>> enforceBudget() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Hot>> victims = new ArrayList<>();
+        Iterator<Map.Entry<String, Hot>> hotIt = hot.entrySet().iterator();
+        while (hot.size() > 1 && hotIt.hasNext()) {
+            Map.Entry<String, Hot> oldest = hotIt.next();
+            boolean idle = now - oldest.getValue().lastAccess > IDLE_MILLIS;
+            if (!idle && hotBytes + coldBytes <= budgetBytes) {
+                break;
+            }
+            hotIt.remove();
+            hotBytes -= cost(oldest.getValue().content);
+            compressing.put(oldest.getKey(), oldest.getValue());
+            victims.add(Map.entry(oldest.getKey(), oldest.getValue()));
+        }
+        dropCold();
+        return victims;
+    }
+
+    // Called without the lock; a document read, replaced or removed while it
+    // was being compressed is left as it is now
+    private void compressAll(List<Map.Entry<String, Hot>> victims) {
+        if (victims.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Hot> victim : victims) {
+            Cold compressed = compress(victim.getValue().content);
+            synchronized (this) {
+                if (compressing.remove(victim.getKey(), victim.getValue())) {
+                    cold.put(victim.getKey(), compressed);
+                    coldBytes += compressed.compressed.length;
+                    compressions++;
+                }
+            }
+        }
+        synchronized (this) {
+            dropCold();
+        }
+    }
+
+    // Drops compressed documents the file store can give back, called with the lock held
+    private void dropCold() {
+        Iterator<Map.Entry<String, Cold>> coldIt = cold.entrySet().iterator();
+        while (hotBytes + coldBytes > budgetBytes && coldIt.hasNext()) {
+            Map.Entry<String, Cold> oldest = coldIt.next();
+            String name = oldest.getKey();
+            if (loader == null || !versions.get(name).equals(persistedVersions.get(name))) {
+                continue;
+            }
+            coldIt.remove();
+            coldBytes -= oldest.getValue().compressed.length;
+        }
+    }
+
+    private static long cost(CharSequence content) {
+        // Object headers plus the worst case of two bytes per char
+        return 64 + 2L * content.length();
+    }
+
+    private static Cold compress(CharSequence content) {
+        // Fed chunk by chunk, so a rope is never flattened into one String
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, content.length() / 4));
+            byte[] buffer = new byte[64 * 1024];
+            int length = 0;
+            for (String chunk : Rope.chunks(content)) {
+                byte[] raw = chunk.getBytes(StandardCharsets.UTF_8);
+                length += raw.length;
+                deflater.setInput(raw);
+                while (!deflater.needsInput()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return new Cold(out.toByteArray(), length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String decompress(Cold cold) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(cold.compressed);
+            byte[] raw = new byte[cold.length];
+            int offset = 0;
+            while (offset < raw.length && !inflater.finished()) {
+                offset += inflater.inflate(raw, offset, raw.length - offset);
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            // Only ever inflating what compress() produced
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getHotBytes() {
+        return hotBytes;
+    }
+
+    public synchronized long getColdBytes() {
+        return coldBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DocumentResidency[hot=" + hot.size() + "/" + hotBytes + "B, cold=" + cold.size() + "/" + coldBytes
+                + "B, budget=" + budgetBytes + "B, compressions=" + compressions + ", rehydrations=" + rehydrations
+                + ", reloads=" + reloads + "]";
+    }
+}
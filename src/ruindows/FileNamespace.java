@@ -0,0 +1,126 @@
+package ruindows;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Names of every file on the desktop, text and images alike.
+//
+// A hash map answers "does this name exist" in O(1) and a sorted set answers
+// prefix queries for autocomplete and type-to-find. Adding is atomic, so two
+// background tasks can never claim the same name. Each kind also keeps its
+// names in the order they were created, which is the desktop order.
+public class FileNamespace {
+
+    // Case-insensitive first so prefixes match regardless of case, then exact
+    // so that names differing only in case are still distinct entries
+    private static final Comparator<String> ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final Map<String, FileStore.Kind> kinds = new ConcurrentHashMap<>();
+    private final NavigableSet<String> sorted = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<FileStore.Kind, List<String>> created = new ConcurrentHashMap<>();
+
+    public FileNamespace() {
+        for (FileStore.Kind kind : FileStore.Kind.values()) {
+            created.put(kind, new ArrayList<>());
+        }
+    }
+
+    // Claims the name, false if it is already taken
+    public boolean add(String name, FileStore.Kind kind) {
+        if (kinds.putIfAbsent(name, kind) != null) {
+            return false;
+        }
+        sorted.add(name);
+        List<String> names = created.get(kind);
+        synchronized (names) {
+            names.add(name);
+        }
+        return true;
+    }
+
+    // Adds the names that are not taken yet, in order
+    public void addAll(Collection<String> names, FileStore.Kind kind) {
+        for (String name : names) {
+            add(name, kind);
+        }
+    }
+
+    public boolean remove(String name) {
+        FileStore.Kind kind = kinds.remove(name);
+        if (kind == null) {
+            return false;
+        }
+        sorted.remove(name);
+        List<String> names = created.get(kind);
+        synchronized (names) {
+            names.remove(name);
+        }
+        return true;
+    }
+
+    public boolean contains(String name) {
+        return kinds.containsKey(name);
+    }
+
+    // Kind of the named file, or null if there is none
+    public FileStore.Kind kindOf(String name) {
+        return kinds.get(name);
+    }
+
+    // Snapshot of the names of one kind in creation order
+    public List<String> names(FileStore.Kind kind) {
+        List<String> names = created.get(kind);
+        synchronized (names) {
+            return new ArrayList<>(names);
+        }
+    }
+
+    public int size(FileStore.Kind kind) {
+        List<String> names = created.get(kind);
+        synchronized (names) {
+            return names.size();
+        }
+    }
+
+    public boolean isEmpty() {
+        return kinds.isEmpty();
+    }
+
+    // Up to limit names starting with prefix, ignoring case, in sorted order
+    public List<String> withPrefix(String prefix, int limit) {
+        List<String> matches = new ArrayList<>();
+        for (String name : range(prefix)) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            matches.add(name);
+        }
+        return matches;
+    }
+
+    // Same as withPrefix, restricted to one kind
+    public List<String> withPrefix(String prefix, FileStore.Kind kind, int limit) {
+        List<String> matches = new ArrayList<>();
+        for (String name : range(prefix)) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            if (kinds.get(name) == kind) {
+                matches.add(name);
+            }
+        }
+        return matches;
+    }
+
+    private NavigableSet<String> range(String prefix) {
+        // Upper case sorts first among names that differ only in case
+        return sorted.subSet(prefix.toUpperCase(), true, prefix + Character.MAX_VALUE, true);
+    }
+}
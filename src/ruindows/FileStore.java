@@ -0,0 +1,713 @@
+package ruindows;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// Append-only store for the desktop's files.
+//
+// File contents go to a data segment (data-<id>.log) and every change appends
+// a small record to index.log. Opening the store reads only the index, file
+// contents are read on demand. A save is durable once its index record is on
+// disk; a torn record at the end of the index is dropped on the next start.
+//
+// Images are also addressed by the SHA-256 of their content. Saving an image
+// whose content is already stored only adds an index record pointing at the
+// existing bytes, and those bytes become garbage once no name refers to them.
+public class FileStore implements AutoCloseable {
+
+    // Thumbnails are small renditions of images, kept out of the user's files
+    public enum Kind { TEXT, IMAGE, THUMBNAIL }
+
+    private static final int INDEX_MAGIC = 0x52554958; // "RUIX"
+    // Version 2 added the content hash to every record
+    private static final int INDEX_VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    // Compact once superseded data is at least this large and half the segment
+    private static final long COMPACT_MIN_GARBAGE = 16L * 1024 * 1024;
+    private static final int WRITE_BUFFER = 256 * 1024;
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+    private static final HexFormat HEX = HexFormat.of();
+
+    public interface Progress {
+        void update(long transferred, long total);
+    }
+
+    private final Path directory;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<Long, Location> locations = new HashMap<>();
+    private final Map<String, Long> locationsByHash = new HashMap<>();
+    private FileChannel indexChannel;
+    private FileChannel dataChannel;
+    private int segment;
+    private long dataEnd;
+    private int activeTransfers = 0;
+    private long garbageBytes = 0;
+    private long sharedBytes = 0;
+    private int indexVersion;
+
+    private static class Entry {
+        final Kind kind;
+        final long offset;
+        final int size;
+        final int crc;
+        final String hash;
+
+        Entry(Kind kind, long offset, int size, int crc, String hash) {
+            this.kind = kind;
+            this.offset = offset;
+            this.size = size;
+            this.crc = crc;
+            this.hash = hash;
+        }
+    }
+
+    // Stored bytes and how many names refer to them
+    private static class Location {
+        final int size;
+        final int crc;
+        final String hash;
+        int references = 0;
+
+        Location(int size, int crc, String hash) {
+            this.size = size;
+            this.crc = crc;
+            this.hash = hash;
+        }
+    }
+
+    // A file checksummed and hashed ahead of writeAll, so that work can be
+    // spread over several threads and kept out of the store lock
+    public static class Prepared {
+        private final String name;
+        private final Kind kind;
+        private final ByteBuffer data;
+        private final int crc;
+        private final String hash;
+
+        private Prepared(String name, Kind kind, ByteBuffer data) {
+            this.name = name;
+            this.kind = kind;
+            this.data = data;
+            this.crc = crc(data.duplicate());
+            this.hash = kind == Kind.IMAGE ? sha256(data.duplicate()) : null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public ByteBuffer getData() {
+            return data.duplicate();
+        }
+    }
+
+    private FileStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static Path defaultDirectory() {
+        String home = System.getProperty("ruindows.home");
+        if (home != null) {
+            return Paths.get(home);
+        }
+        return Paths.get(System.getProperty("user.home"), ".ruindows");
+    }
+
+    public static FileStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileStore store = new FileStore(directory);
+        store.load();
+        if (store.indexVersion < INDEX_VERSION) {
+            // Rewriting the index adds the hashes of images stored before them
+            store.compact();
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        Path indexPath = directory.resolve("index.log");
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (indexChannel.size() < HEADER_SIZE) {
+            segment = 0;
+            indexVersion = INDEX_VERSION;
+            indexChannel.truncate(0);
+            indexChannel.write(header(segment), 0);
+            indexChannel.force(true);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(indexChannel, header, 0);
+            header.flip();
+            if (header.getInt() != INDEX_MAGIC) {
+                throw new IOException("Not a RUindows index: " + indexPath);
+            }
+            indexVersion = header.getInt();
+            if (indexVersion < 1 || indexVersion > INDEX_VERSION) {
+                throw new IOException("Unsupported index version " + indexVersion + ": " + indexPath);
+            }
+            segment = header.getInt();
+        }
+
+        dataChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        dataEnd = dataChannel.size();
+        deleteStaleSegments();
+        Files.deleteIfExists(directory.resolve("index.log.tmp"));
+
+        // Replay the index, stopping at the first incomplete or corrupt record
+        long position = HEADER_SIZE;
+        long end = indexChannel.size();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (position + 4 <= end) {
+            lengthBuffer.clear();
+            readFully(indexChannel, lengthBuffer, position);
+            lengthBuffer.flip();
+            int length = lengthBuffer.getInt();
+            if (length <= 0 || position + 4 + length + 4 > end) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length + 4);
+            readFully(indexChannel, record, position + 4);
+            record.flip();
+            ByteBuffer body = record.slice().limit(length);
+            record.position(length);
+            if (crc(body.duplicate()) != record.getInt()) {
+                break;
+            }
+            apply(body);
+            position += 4 + length + 4;
+        }
+        if (position != end) {
+            indexChannel.truncate(position);
+            indexChannel.force(true);
+        }
+        indexChannel.position(position);
+    }
+
+    private void apply(ByteBuffer body) {
+        byte op = body.get();
+        Kind kind = Kind.values()[body.get()];
+        byte[] nameBytes = new byte[body.getShort() & 0xFFFF];
+        body.get(nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        long offset = body.getLong();
+        int size = body.getInt();
+        int crc = body.getInt();
+        String hash = null;
+        if (indexVersion >= 2) {
+            byte[] hashBytes = new byte[body.get() & 0xFF];
+            body.get(hashBytes);
+            hash = hashBytes.length == 0 ? null : HEX.formatHex(hashBytes);
+        }
+
+        // Overwrites keep the file's original position
+        Entry entry = new Entry(kind, offset, size, crc, hash);
+        if (op == OP_PUT) {
+            addReference(entry);
+        }
+        Entry previous = op == OP_PUT ? entries.put(name, entry) : entries.remove(name);
+        if (previous != null) {
+            removeReference(previous);
+        }
+    }
+
+    private void addReference(Entry entry) {
+        if (entry.size == 0) {
+            return;
+        }
+        Location location = locations.computeIfAbsent(entry.offset,
+                k -> new Location(entry.size, entry.crc, entry.hash));
+        if (location.references++ > 0) {
+            sharedBytes += entry.size;
+        }
+        if (entry.hash != null) {
+            locationsByHash.putIfAbsent(entry.hash, entry.offset);
+        }
+    }
+
+    private void removeReference(Entry entry) {
+        Location location = entry.size == 0 ? null : locations.get(entry.offset);
+        if (location == null) {
+            return;
+        }
+        if (--location.references > 0) {
+            sharedBytes -= entry.size;
+            return;
+        }
+        locations.remove(entry.offset);
+        garbageBytes += entry.size;
+        if (location.hash != null) {
+            locationsByHash.remove(location.hash, entry.offset);
+        }
+    }
+
+    private void deleteStaleSegments() throws IOException {
+        // Left behind by a compaction that did not finish, or by one that did
+        Path current = segmentPath(segment);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "data-*.log")) {
+            for (Path path : stream) {
+                if (!path.equals(current)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    public synchronized List<String> names(Kind kind) {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().kind == kind) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
+    public synchronized boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    public synchronized int checksum(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? 0 : entry.crc;
+    }
+
+    public synchronized long size(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? -1 : entry.size;
+    }
+
+    // Whether any image still has this content
+    public synchronized boolean hasContent(String hash) {
+        return locationsByHash.containsKey(hash);
+    }
+
+    // SHA-256 of an image's content in hex, names with equal hashes share their bytes
+    public synchronized String contentHash(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.hash;
+    }
+
+    public synchronized byte[] read(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(entry.size);
+        readFully(dataChannel, buffer, entry.offset);
+        buffer.flip();
+        if (crc(buffer.duplicate()) != entry.crc) {
+            throw new IOException("Checksum mismatch for " + name);
+        }
+        return buffer.array();
+    }
+
+    public String readText(String name) throws IOException {
+        byte[] data = read(name);
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+    // Encodes the text chunk by chunk, so a rope is written without being flattened
+    public synchronized void writeText(String name, CharSequence content) throws IOException {
+        CRC32 crc = new CRC32();
+        long offset = dataEnd;
+        long position = offset;
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+        for (String chunk : Rope.chunks(content)) {
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            crc.update(bytes);
+            if (bytes.length > buffer.remaining()) {
+                buffer.flip();
+                position += writeFully(buffer, position);
+                buffer.clear();
+            }
+            if (bytes.length > buffer.capacity()) {
+                position += writeFully(ByteBuffer.wrap(bytes), position);
+            } else {
+                buffer.put(bytes);
+            }
+        }
+        buffer.flip();
+        position += writeFully(buffer, position);
+        if (position - offset > Integer.MAX_VALUE) {
+            throw new IOException(name + " is too large to store");
+        }
+        dataEnd = position;
+        dataChannel.force(false);
+        commit(name, Kind.TEXT, offset, (int) (position - offset), (int) crc.getValue(), null);
+    }
+
+    public synchronized void write(String name, Kind kind, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        String hash = kind == Kind.IMAGE ? sha256(buffer.duplicate()) : null;
+        if (hash != null && link(name, kind, hash)) {
+            return;
+        }
+        int crc = crc(buffer.duplicate());
+
+        // Data first, so the index never points at bytes that are not on disk
+        long offset = dataEnd;
+        writeFully(buffer, offset);
+        dataEnd += data.length;
+        dataChannel.force(false);
+        commit(name, kind, offset, data.length, crc, hash);
+    }
+
+    // Points name at content that is already stored, false if there is none with this hash
+    private boolean link(String name, Kind kind, String hash) throws IOException {
+        return link(name, kind, hash, true);
+    }
+
+    private boolean link(String name, Kind kind, String hash, boolean sync) throws IOException {
+        Long offset = locationsByHash.get(hash);
+        if (offset == null) {
+            return false;
+        }
+        Location location = locations.get(offset);
+        commit(name, kind, offset, location.size, location.crc, hash, sync);
+        return true;
+    }
+
+    // Checksums and hashes the data without taking the store lock, it may be a mapped file
+    public static Prepared prepare(String name, Kind kind, ByteBuffer data) {
+        return new Prepared(name, kind, data);
+    }
+
+    // Stores many files with one sync of the data and one of the index, for
+    // imports. Content that is already stored, or earlier in the batch, is
+    // linked instead of written again.
+    public synchronized void writeAll(List<Prepared> files) throws IOException {
+        // Where each file's bytes go, null for content that is linked
+        List<Long> offsets = new ArrayList<>(files.size());
+        Set<String> batchHashes = new HashSet<>();
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+        long position = dataEnd;
+        for (Prepared file : files) {
+            int size = file.data.remaining();
+            if (file.hash != null && (locationsByHash.containsKey(file.hash) || !batchHashes.add(file.hash))) {
+                offsets.add(null);
+                continue;
+            }
+            if (size > buffer.remaining()) {
+                buffer.flip();
+                position += writeFully(buffer, position);
+                buffer.clear();
+            }
+            offsets.add(position + buffer.position());
+            if (size > buffer.capacity()) {
+                position += writeFully(file.data.duplicate(), position);
+            } else {
+                buffer.put(file.data.duplicate());
+            }
+        }
+        buffer.flip();
+        position += writeFully(buffer, position);
+        dataEnd = position;
+        dataChannel.force(false);
+
+        // The index only points at the data once all of it is on disk
+        for (int i = 0; i < files.size(); i++) {
+            Prepared file = files.get(i);
+            Long offset = offsets.get(i);
+            if (offset == null) {
+                link(file.name, file.kind, file.hash, false);
+            } else {
+                commit(file.name, file.kind, offset, file.data.remaining(), file.crc, file.hash, false);
+            }
+        }
+        indexChannel.force(false);
+    }
+
+    // Streams size bytes from source into the store. The space is reserved up
+    // front and the copy runs without holding the store lock, so several
+    // transfers and ordinary saves can proceed at once. A FileChannel source is
+    // copied by the kernel, and the checksum is taken from a mapping of the
+    // written bytes, so the content never passes through the Java heap.
+    public void transfer(String name, Kind kind, ReadableByteChannel source, long size, Progress progress)
+            throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(name + " is too large to store");
+        }
+        // A local image that is already stored is not copied at all
+        if (kind == Kind.IMAGE && source instanceof FileChannel) {
+            FileChannel file = (FileChannel) source;
+            String hash = sha256(file.map(FileChannel.MapMode.READ_ONLY, file.position(), size));
+            synchronized (this) {
+                if (link(name, kind, hash)) {
+                    progress.update(size, size);
+                    return;
+                }
+            }
+        }
+
+        FileChannel target;
+        long offset;
+        synchronized (this) {
+            target = dataChannel;
+            offset = dataEnd;
+            if (size > 0) {
+                // transferFrom does nothing past the end of the file, so extend it over the reserved space
+                writeFully(ByteBuffer.allocate(1), offset + size - 1);
+            }
+            dataEnd += size;
+            activeTransfers++;
+        }
+        boolean committed = false;
+        try {
+            long copied = 0;
+            while (copied < size) {
+                long count = target.transferFrom(source, offset + copied, Math.min(TRANSFER_CHUNK, size - copied));
+                if (count <= 0) {
+                    throw new IOException("Source of " + name + " ended after " + copied + " of " + size + " bytes");
+                }
+                copied += count;
+                progress.update(copied, size);
+            }
+            target.force(false);
+            CRC32 crc = new CRC32();
+            ByteBuffer written = target.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            String hash = kind == Kind.IMAGE ? sha256(written.duplicate()) : null;
+            crc.update(written);
+            synchronized (this) {
+                // Someone may have stored the same content meanwhile, the copy then becomes garbage
+                if (hash == null || !link(name, kind, hash)) {
+                    commit(name, kind, offset, (int) size, (int) crc.getValue(), hash);
+                    committed = true;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                if (!committed) {
+                    // The reserved space stays behind as garbage for the next compaction
+                    garbageBytes += size;
+                }
+                activeTransfers--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void commit(String name, Kind kind, long offset, int size, int crc, String hash) throws IOException {
+        commit(name, kind, offset, size, crc, hash, true);
+    }
+
+    private void commit(String name, Kind kind, long offset, int size, int crc, String hash, boolean sync)
+            throws IOException {
+        writeRecord(indexChannel, OP_PUT, kind, name, offset, size, crc, hash);
+        if (sync) {
+            indexChannel.force(false);
+        }
+        Entry entry = new Entry(kind, offset, size, crc, hash);
+        addReference(entry);
+        Entry previous = entries.put(name, entry);
+        if (previous != null) {
+            removeReference(previous);
+        }
+    }
+
+    private long writeFully(ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += dataChannel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    public synchronized void delete(String name) throws IOException {
+        Entry previous = entries.get(name);
+        if (previous == null) {
+            return;
+        }
+        appendRecord(OP_DELETE, previous.kind, name, 0, 0, 0, null);
+        entries.remove(name);
+        removeReference(previous);
+    }
+
+    private void appendRecord(byte op, Kind kind, String name, long offset, int size, int crc, String hash)
+            throws IOException {
+        writeRecord(indexChannel, op, kind, name, offset, size, crc, hash);
+        indexChannel.force(false);
+    }
+
+    private static void writeRecord(FileChannel channel, byte op, Kind kind, String name, long offset, int size,
+            int crc, String hash) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] hashBytes = hash == null ? new byte[0] : HEX.parseHex(hash);
+        int length = 1 + 1 + 2 + nameBytes.length + 8 + 4 + 4 + 1 + hashBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(4 + length + 4);
+        record.putInt(length);
+        record.put(op);
+        record.put((byte) kind.ordinal());
+        record.putShort((short) nameBytes.length);
+        record.put(nameBytes);
+        record.putLong(offset);
+        record.putInt(size);
+        record.putInt(crc);
+        record.put((byte) hashBytes.length);
+        record.put(hashBytes);
+        record.putInt(crc(ByteBuffer.wrap(record.array(), 4, length)));
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    // Rewrites live files into a fresh segment when most of the current one is dead
+    public synchronized boolean compactIfNeeded() throws IOException {
+        long dataSize = dataChannel.size();
+        if (garbageBytes < COMPACT_MIN_GARBAGE || garbageBytes * 2 < dataSize) {
+            return false;
+        }
+        compact();
+        return true;
+    }
+
+    public synchronized void compact() throws IOException {
+        // Transfers write into the current segment outside the lock
+        while (activeTransfers > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for transfers");
+            }
+        }
+        int newSegment = segment + 1;
+        Path newIndexPath = directory.resolve("index.log.tmp");
+        Map<String, Entry> compacted = new LinkedHashMap<>();
+
+        try (FileChannel newData = FileChannel.open(segmentPath(newSegment), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel newIndex = FileChannel.open(newIndexPath, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            newIndex.write(header(newSegment));
+            long offset = 0;
+            // Content shared by several names, or stored twice before it had a hash, is copied once
+            Map<Long, Long> moved = new HashMap<>();
+            Map<String, Long> movedByHash = new HashMap<>();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                String hash = entry.hash;
+                if (hash == null && entry.kind == Kind.IMAGE && entry.size > 0) {
+                    hash = sha256(dataChannel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.size));
+                }
+                Long newOffset = hash != null ? movedByHash.get(hash) : moved.get(entry.offset);
+                if (newOffset == null || entry.size == 0) {
+                    newOffset = offset;
+                    long copied = 0;
+                    while (copied < entry.size) {
+                        copied += dataChannel.transferTo(entry.offset + copied, entry.size - copied, newData);
+                    }
+                    moved.put(entry.offset, newOffset);
+                    if (hash != null) {
+                        movedByHash.put(hash, newOffset);
+                    }
+                    offset += entry.size;
+                }
+                compacted.put(e.getKey(), new Entry(entry.kind, newOffset, entry.size, entry.crc, hash));
+            }
+            newData.force(true);
+
+            for (Map.Entry<String, Entry> e : compacted.entrySet()) {
+                Entry entry = e.getValue();
+                writeRecord(newIndex, OP_PUT, entry.kind, e.getKey(), entry.offset, entry.size, entry.crc,
+                        entry.hash);
+            }
+            newIndex.force(true);
+        }
+
+        // Swapping the index in is the commit point, the old segment is removed afterwards
+        indexChannel.close();
+        dataChannel.close();
+        Files.move(newIndexPath, directory.resolve("index.log"), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        entries.clear();
+        locations.clear();
+        locationsByHash.clear();
+        garbageBytes = 0;
+        sharedBytes = 0;
+        load();
+    }
+
+    public synchronized long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    // Bytes that would be stored again if identical images did not share their content
+    public synchronized long getDedupSavedBytes() {
+        return sharedBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        indexChannel.close();
+        dataChannel.close();
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve("data-" + id + ".log");
+    }
+
+    private static ByteBuffer header(int segment) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(INDEX_MAGIC).putInt(INDEX_VERSION).putInt(segment);
+        header.flip();
+        return header;
+    }
+
+    private static String sha256(ByteBuffer buffer) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(buffer);
+            return HEX.formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package ruindows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Copies the text and image files of a host folder onto the desktop.
+//
+// The folder is walked once and every file gets a desktop name up front:
+// its name reduced to letters and digits, with a number appended when that
+// is taken. Files are then read in batches, each file of a batch on its own
+// reader task and large ones memory-mapped, and every batch is handed to the
+// sink in one piece while the next one is being read. Runs on the calling
+// thread apart from the reads; a name whose file cannot be read is given back.
+public class FolderImport {
+
+    private static final int BATCH_FILES = 1024;
+    private static final long BATCH_BYTES = 64L * 1024 * 1024;
+    private static final long MAP_THRESHOLD = 256 * 1024;
+    private static final int MAX_BASE_NAME = 64;
+
+    private static final List<String> TEXT_EXTENSIONS = List.of("txt", "md", "csv", "log");
+    private static final List<String> IMAGE_EXTENSIONS = List.of("png", "jpg", "jpeg", "gif", "bmp");
+
+    // Receives each batch of files once they are read
+    public interface Sink {
+        void store(List<FileStore.Prepared> batch) throws IOException;
+    }
+
+    public interface Progress {
+        void update(int done, int total);
+    }
+
+    public static class Result {
+        private final List<String> texts = new ArrayList<>();
+        private final List<String> images = new ArrayList<>();
+        private int skipped = 0;
+        private int failed = 0;
+
+        // Names of the imported text files, in folder order
+        public List<String> getTexts() {
+            return texts;
+        }
+
+        public List<String> getImages() {
+            return images;
+        }
+
+        // Files that are neither text nor images
+        public int getSkipped() {
+            return skipped;
+        }
+
+        // Files that could not be read
+        public int getFailed() {
+            return failed;
+        }
+    }
+
+    private static class Claimed {
+        final Path path;
+        final String name;
+        final FileStore.Kind kind;
+        final long size;
+
+        Claimed(Path path, String name, FileStore.Kind kind, long size) {
+            this.path = path;
+            this.name = name;
+            this.kind = kind;
+            this.size = size;
+        }
+    }
+
+    private final FileNamespace names;
+    private final Executor readers;
+    private final Sink sink;
+    // Next suffix to try for each base name, so many files named alike do not probe from 2 every time
+    private final Map<String, Integer> nextSuffix = new HashMap<>();
+
+    public FolderImport(FileNamespace names, Executor readers, Sink sink) {
+        this.names = names;
+        this.readers = readers;
+        this.sink = sink;
+    }
+
+    public Result run(Path folder, Progress progress) throws IOException {
+        Result result = new Result();
+        List<Claimed> claimed = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(folder)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            FileStore.Kind kind = kindOf(fileName);
+            if (kind == null) {
+                result.skipped++;
+                continue;
+            }
+            claimed.add(new Claimed(file, claim(fileName, kind), kind, Files.size(file)));
+        }
+        progress.update(0, claimed.size());
+
+        // Batches are read while the previous one is being stored
+        List<List<Claimed>> batches = batches(claimed);
+        CompletableFuture<List<FileStore.Prepared>> next = batches.isEmpty() ? null : read(batches.get(0));
+        int done = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            List<Claimed> batch = batches.get(i);
+            List<FileStore.Prepared> prepared = next.join();
+            next = i + 1 < batches.size() ? read(batches.get(i + 1)) : null;
+
+            List<FileStore.Prepared> readable = new ArrayList<>(prepared.size());
+            for (int j = 0; j < batch.size(); j++) {
+                if (prepared.get(j) == null) {
+                    names.remove(batch.get(j).name);
+                    result.failed++;
+                } else {
+                    readable.add(prepared.get(j));
+                }
+            }
+            try {
+                sink.store(readable);
+            } catch (IOException e) {
+                // Nothing after this batch is claimed any more, so its names are freed as well
+                for (int j = i; j < batches.size(); j++) {
+                    for (Claimed file : batches.get(j)) {
+                        names.remove(file.name);
+                    }
+                }
+                if (next != null) {
+                    next.join();
+                }
+                throw e;
+            }
+            for (FileStore.Prepared file : readable) {
+                (file.getKind() == FileStore.Kind.TEXT ? result.texts : result.images).add(file.getName());
+            }
+            done += batch.size();
+            progress.update(done, claimed.size());
+        }
+        return result;
+    }
+
+    private static List<List<Claimed>> batches(List<Claimed> claimed) {
+        List<List<Claimed>> batches = new ArrayList<>();
+        List<Claimed> batch = new ArrayList<>();
+        long bytes = 0;
+        for (Claimed file : claimed) {
+            if (!batch.isEmpty() && (batch.size() == BATCH_FILES || bytes + file.size > BATCH_BYTES)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                bytes = 0;
+            }
+            batch.add(file);
+            bytes += file.size;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    // Reads and checksums every file of the batch in parallel, null for those that failed
+    private CompletableFuture<List<FileStore.Prepared>> read(List<Claimed> batch) {
+        List<CompletableFuture<FileStore.Prepared>> reads = new ArrayList<>(batch.size());
+        for (Claimed file : batch) {
+            reads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return FileStore.prepare(file.name, file.kind, contents(file.path));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, readers).exceptionally(error -> {
+                System.err.println("Could not import " + file.path + ": " + error.getMessage());
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> reads.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+    }
+
+    private static ByteBuffer contents(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("too large");
+            }
+            // The mapping stays valid after the channel is closed
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Reads until full or the file turns out shorter
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    static FileStore.Kind kindOf(String fileName) {
+        String extension = extension(fileName);
+        if (TEXT_EXTENSIONS.contains(extension)) {
+            return FileStore.Kind.TEXT;
+        }
+        if (IMAGE_EXTENSIONS.contains(extension)) {
+            return FileStore.Kind.IMAGE;
+        }
+        return null;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    // Letters and digits of the name, as the save dialogs require, with the
+    // desktop's extension for the kind and a number appended if it is taken
+    private String claim(String fileName, FileStore.Kind kind) {
+        int dot = fileName.lastIndexOf('.');
+        String base = (dot < 0 ? fileName : fileName.substring(0, dot)).replaceAll("[^a-zA-Z0-9]", "");
+        if (base.isEmpty()) {
+            base = kind == FileStore.Kind.TEXT ? "text" : "image";
+        }
+        if (base.length() > MAX_BASE_NAME) {
+            base = base.substring(0, MAX_BASE_NAME);
+        }
+        String extension = kind == FileStore.Kind.TEXT ? ".txt" : "." + extension(fileName);
+        if (names.add(base + extension, kind)) {
+            return base + extension;
+        }
+        String key = base + extension;
+        int suffix = nextSuffix.getOrDefault(key, 2);
+        while (!names.add(base + suffix + extension, kind)) {
+            suffix++;
+        }
+        nextSuffix.put(key, suffix + 1);
+        return base + suffix + extension;
+    }
+}
@@ -0,0 +1,231 @@
+package ruindows;
+
+import javafx.scene.image.Image;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Shared cache of decoded images, keyed by resource path and requested size.
+// Least recently used entries are evicted once the estimated pixel bytes
+// go over the budget.
+//
+// Images that do not come from a resource, such as the user's pictures, are
+// cached under a caller-chosen key and decoded through a loader on a miss.
+// Pixels kept outside the cache, such as the pyramid of an open photo, can be
+// reserved against the same budget so cached images make room for them.
+public class ImageCache {
+
+    public interface Loader {
+        // Null if there is nothing to decode
+        Image load() throws IOException;
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Image> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> sizes = new LinkedHashMap<>();
+    private long currentBytes = 0;
+    private final Map<Object, Long> reserved = new IdentityHashMap<>();
+    private long reservedBytes = 0;
+
+    // Statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Image get(String path) {
+        return get(path, 0, 0);
+    }
+
+    public Image get(String path, double width, double height) {
+        return get(path, width, height, true, false);
+    }
+
+    public Image get(String path, double width, double height, boolean preserveRatio) {
+        return get(path, width, height, preserveRatio, false);
+    }
+
+    // Starts decoding on the JavaFX background loader and returns at once;
+    // the image reports its progress until the pixels are ready
+    public Image getAsync(String path, double width, double height, boolean preserveRatio) {
+        return get(path, width, height, preserveRatio, true);
+    }
+
+    private Image get(String path, double width, double height, boolean preserveRatio, boolean background) {
+        String key = path + "@" + (int) width + "x" + (int) height + (preserveRatio ? "" : "!");
+        synchronized (this) {
+            Image cached = images.get(key);
+            if (cached != null && !cached.isError()) {
+                hits++;
+                return cached;
+            }
+            if (cached != null) {
+                // Failed decodes are retried rather than served from the cache
+                images.remove(key);
+                currentBytes -= sizes.remove(key);
+            }
+            misses++;
+        }
+
+        // Decode outside the lock so other callers are not held up
+        Image image = width > 0 && height > 0
+                ? new Image(path, width, height, preserveRatio, true, background)
+                : new Image(path, background);
+
+        synchronized (this) {
+            Image raced = images.get(key);
+            if (raced != null) {
+                return raced;
+            }
+            long bytes = estimateBytes(image, width, height);
+            images.put(key, image);
+            sizes.put(key, bytes);
+            currentBytes += bytes;
+            evict();
+        }
+        return image;
+    }
+
+    // Decodes outside the lock on a miss, a failed or missing decode is not cached
+    public Image get(String key, Loader loader) throws IOException {
+        synchronized (this) {
+            Image cached = images.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        Image image = loader.load();
+        if (image == null || image.isError()) {
+            return image;
+        }
+        synchronized (this) {
+            Image raced = images.get(key);
+            if (raced != null) {
+                return raced;
+            }
+            store(key, image);
+        }
+        return image;
+    }
+
+    // Never decodes, for callers that load on a miss themselves
+    public synchronized Image getIfPresent(String key) {
+        Image cached = images.get(key);
+        if (cached != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return cached;
+    }
+
+    // Caches an image that was produced rather than decoded, e.g. an edit
+    public synchronized void put(String key, Image image) {
+        remove(key);
+        store(key, image);
+    }
+
+    public synchronized void remove(String key) {
+        if (images.remove(key) != null) {
+            currentBytes -= sizes.remove(key);
+        }
+    }
+
+    // Drops every entry holding this image, e.g. once its pixels are kept elsewhere
+    public synchronized void remove(Image image) {
+        Iterator<Map.Entry<String, Image>> it = images.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Image> entry = it.next();
+            if (entry.getValue() == image) {
+                it.remove();
+                currentBytes -= sizes.remove(entry.getKey());
+            }
+        }
+    }
+
+    // Counts bytes the owner keeps outside the cache against the budget,
+    // replacing what it reserved before; zero bytes drops its reservation
+    public synchronized void reserve(Object owner, long bytes) {
+        Long previous = bytes > 0 ? reserved.put(owner, bytes) : reserved.remove(owner);
+        reservedBytes += bytes - (previous == null ? 0 : previous);
+        evict();
+    }
+
+    // Moves an entry to a new key, e.g. once an edited image has been saved
+    public synchronized void rekey(String from, String to) {
+        Image image = images.remove(from);
+        if (image != null) {
+            currentBytes -= sizes.remove(from);
+            put(to, image);
+        }
+    }
+
+    private void store(String key, Image image) {
+        long bytes = estimateBytes(image, 0, 0);
+        images.put(key, image);
+        sizes.put(key, bytes);
+        currentBytes += bytes;
+        evict();
+    }
+
+    private static long estimateBytes(Image image, double width, double height) {
+        double w = image.getWidth() > 0 ? image.getWidth() : width;
+        double h = image.getHeight() > 0 ? image.getHeight() : height;
+        return Math.max(1, (long) w * (long) h * 4);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Image>> it = images.entrySet().iterator();
+        // Always keep the most recent entry, even if it alone is over budget
+        while (currentBytes + reservedBytes > maxBytes && images.size() > 1 && it.hasNext()) {
+            String key = it.next().getKey();
+            it.remove();
+            currentBytes -= sizes.remove(key);
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        images.clear();
+        sizes.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ImageCache[entries=" + images.size() + ", bytes=" + currentBytes + ", reserved=" + reservedBytes
+                + "/" + maxBytes + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
@@ -0,0 +1,121 @@
+package ruindows;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+// An image at successively halved resolutions, cut into square tiles.
+//
+// Level 0 is the full image and every further level is half the size of the
+// one before, down to a single tile. Tiles are turned into FX images only
+// when they are first shown and a bounded number of them is kept, so the
+// memory used for display depends on the viewport, not on the image size.
+public class ImagePyramid {
+
+    public static final int TILE_SIZE = 256;
+    private static final int MAX_TILE_IMAGES = 96;
+
+    private final List<PixelPipeline.Raster> levels;
+
+    // Tile images by level and position, least recently used first
+    private final LinkedHashMap<Long, WritableImage> tiles = new LinkedHashMap<Long, WritableImage>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WritableImage> eldest) {
+            return size() > MAX_TILE_IMAGES;
+        }
+    };
+
+    private ImagePyramid(List<PixelPipeline.Raster> levels) {
+        this.levels = levels;
+    }
+
+    // Builds every level, call off the FX thread
+    public static ImagePyramid build(PixelPipeline.Raster full) {
+        return build(full, () -> false);
+    }
+
+    // Same, giving up with a CancellationException between levels once cancelled returns true
+    public static ImagePyramid build(PixelPipeline.Raster full, BooleanSupplier cancelled) {
+        List<PixelPipeline.Raster> levels = new ArrayList<>();
+        PixelPipeline.Raster level = full;
+        levels.add(level);
+        while (level.getWidth() > TILE_SIZE || level.getHeight() > TILE_SIZE) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            level = PixelPipeline.halve(level);
+            levels.add(level);
+        }
+        return new ImagePyramid(levels);
+    }
+
+    public int getLevelCount() {
+        return levels.size();
+    }
+
+    public int getWidth() {
+        return levels.get(0).getWidth();
+    }
+
+    public int getHeight() {
+        return levels.get(0).getHeight();
+    }
+
+    public PixelPipeline.Raster getLevel(int level) {
+        return levels.get(level);
+    }
+
+    // The smallest level that still has at least one pixel per screen pixel at this scale
+    public int levelFor(double scale) {
+        int level = 0;
+        while (level + 1 < levels.size() && scale * (1 << (level + 1)) <= 1) {
+            level++;
+        }
+        return level;
+    }
+
+    public int getColumns(int level) {
+        return (levels.get(level).getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    public int getRows(int level) {
+        return (levels.get(level).getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+    }
+
+    // Only used on the FX thread
+    public WritableImage tile(int level, int column, int row) {
+        long key = ((long) level << 48) | ((long) column << 24) | row;
+        WritableImage image = tiles.get(key);
+        if (image == null) {
+            PixelPipeline.Raster raster = levels.get(level);
+            int x = column * TILE_SIZE;
+            int y = row * TILE_SIZE;
+            int width = Math.min(TILE_SIZE, raster.getWidth() - x);
+            int height = Math.min(TILE_SIZE, raster.getHeight() - y);
+            image = new WritableImage(width, height);
+            image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+                    raster.getPixels(), y * raster.getWidth() + x, raster.getWidth());
+            tiles.put(key, image);
+        }
+        return image;
+    }
+
+    public int getTileImageCount() {
+        return tiles.size();
+    }
+
+    // Pixels held by all levels, not counting the tile images made from them
+    public long getBytes() {
+        long bytes = 0;
+        for (PixelPipeline.Raster level : levels) {
+            bytes += (long) level.getWidth() * level.getHeight() * 4;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,1908 @@
+package ruindows;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
+import javafx.geometry.Side;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.*;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaView;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import javafx.util.Duration;
+import javafx.animation.*;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.scene.input.KeyCode;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+public class Main extends Application {
+    
+    // System constants
+    private static final String CORRECT_PASSWORD = "password123";
+    private static final int MAX_SHORTCUTS_PER_COLUMN = 5;
+    private static final int SHORTCUT_ICON_SIZE = 48;
+    private static final long IMAGE_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int GALLERY_THUMBNAIL_WIDTH = 200;
+    private static final int GALLERY_THUMBNAIL_HEIGHT = 150;
+    private static final int MAX_SEARCH_RESULTS = 10;
+    private static final int MAX_NAME_SUGGESTIONS = 8;
+    private static final int MAX_MEDIA_PLAYERS = 4;
+    private static final int MAX_IDLE_MEDIA_PLAYERS = 2;
+    // Built ChRUme pages kept across all tabs and windows
+    private static final int MAX_CACHED_PAGES = 8;
+    private static final Pattern ALPHANUMERIC = Pattern.compile("[a-zA-Z0-9]+");
+    private static final long TEXT_HEAP_BUDGET = Long.getLong("ruindows.textHeapBudget", 64L * 1024 * 1024);
+    private static final long IMAGE_HEAP_BUDGET = Long.getLong("ruindows.imageHeapBudget", 256L * 1024 * 1024);
+    private static final String EDITED_IMAGE_KEY = "edited:";
+    private static final String MEMORY_IMAGE_KEY = "memory:";
+    private static final String THUMBNAIL_PREFIX = "thumbnail/";
+    private static final int DOWNLOAD_THREADS = 3;
+    private static final int WORKER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final boolean REPORT_STARTUP = Boolean.getBoolean("ruindows.startupTiming");
+    private static final Duration TASK_MANAGER_REFRESH = Duration.seconds(1);
+    private static final Duration IMPORT_MESSAGE_DURATION = Duration.seconds(4);
+    private static final String METRICS_FILE = System.getProperty("ruindows.metricsFile");
+    // How long the FX thread may go without taking work before it is sampled, 0 turns this off
+    private static final long STALL_MILLIS = Long.getLong("ruindows.stallMillis", 200);
+    
+    // Startup phases
+    private static final String PHASE_START = "start";
+    private static final String PHASE_LOGIN_SCENE = "login scene";
+    private static final String PHASE_FIRST_FRAME = "first frame";
+    private static final String PHASE_FILES = "files loaded";
+    private static final String PHASE_IMAGES = "images decoded";
+    private static final String PHASE_DESKTOP_BUILT = "desktop built";
+    private static final String PHASE_DESKTOP_SHOWN = "desktop shown";
+    
+    // Main stage and scenes
+    private Stage primaryStage;
+    private Scene loginScene;
+    private Scene homeScene;
+    private final StartupTimer startupTimer = new StartupTimer();
+    // Set when the password was accepted before the desktop was ready, FX thread only
+    private boolean desktopRequested = false;
+    
+    // Latency of user-facing operations, also recorded as Flight Recorder events
+    private final Metrics metrics = new Metrics();
+    // Login in progress until the desktop is shown, FX thread only
+    private Metrics.Span loginSpan;
+    private StallWatchdog stallWatchdog;
+    
+    // Data storage, file contents are loaded from the file store on first open
+    // and text stays resident only while it is in use; the store is opened on
+    // the IO lane and used from the FX thread and the other lanes
+    private volatile FileStore fileStore;
+    private final DocumentResidency textFiles = new DocumentResidency(TEXT_HEAP_BUDGET,
+            name -> fileStore == null ? null : fileStore.readText(name));
+    // Images stay encoded in the store and are decoded on demand into a cache
+    // keyed by content hash, so the heap used for them stays within the budget;
+    // the pyramids of open photos count against the same budget
+    private final ImageCache photoCache = new ImageCache(IMAGE_HEAP_BUDGET);
+    // Encoded images when there is no file store to keep them in
+    private final Map<String, byte[]> encodedImages = new ConcurrentHashMap<>();
+    // Desktop icons of images by image key, stored as THUMBNAIL files when there is a store
+    private final Map<String, byte[]> encodedThumbnails = new ConcurrentHashMap<>();
+    // Edits that are not saved yet, only used on the FX thread
+    private final Map<String, PixelPipeline.Raster> unsavedEdits = new HashMap<>();
+    private final Map<String, PixelPipeline.Raster> pendingImageWrites = new ConcurrentHashMap<>();
+    private final SearchIndex searchIndex = new SearchIndex(this::readSnippetText);
+    private final FileNamespace fileNames = new FileNamespace();
+    // Created with the store on the IO lane, also read in published updates
+    private volatile AutosaveJournal autosave;
+    // Decoding, downloads and store writes, with their results applied once per pulse
+    private final TaskScheduler tasks = new TaskScheduler(WORKER_THREADS, DOWNLOAD_THREADS);
+    
+    // Shared decoded icons and pictures
+    private final ImageCache imageCache = new ImageCache(IMAGE_CACHE_BYTES);
+    // Desktop icons of images, loaded in the background; arrivals repaint the desktop once per pulse
+    private final Thumbnails thumbnails = new Thumbnails(new ThumbnailStorage(), imageCache, tasks,
+            SHORTCUT_ICON_SIZE, this::refreshDesktopLater);
+    private ShortcutFactory shortcutFactory;
+    
+    // Home page components
+    private DesktopView shortcutsGrid;
+    private MenuBar taskBar;
+    private MenuItem importFolderItem;
+    private final Label importLabel = new Label();
+    private final ProgressBar importProgress = new ProgressBar();
+    private final HBox importBar = new HBox(10, importLabel, importProgress);
+    
+    // Media players and timelines, released with the window or page that uses them
+    private final MediaManager mediaManager = new MediaManager(MAX_MEDIA_PLAYERS, MAX_IDLE_MEDIA_PLAYERS);
+    private final PageCache pageCache = new PageCache(MAX_CACHED_PAGES, this::releasePage);
+    
+    // Per window resource use, shown by the Task Manager
+    private WindowMonitor windowMonitor;
+    private Stage taskManagerStage;
+    
+    @Override
+    public void start(Stage primaryStage) throws Exception {
+        this.primaryStage = primaryStage;
+        shortcutFactory = new ShortcutFactory(imageCache, thumbnails, SHORTCUT_ICON_SIZE, primaryStage);
+        startupTimer.mark(PHASE_START);
+        windowMonitor = new WindowMonitor(mediaManager);
+        if (STALL_MILLIS > 0) {
+            stallWatchdog = new StallWatchdog(FileStore.defaultDirectory().resolve("stalls.log"), STALL_MILLIS,
+                    metrics);
+            stallWatchdog.start();
+        }
+        
+        // Only the login screen is built before the first frame
+        createLoginScene();
+        startupTimer.mark(PHASE_LOGIN_SCENE);
+        Runnable[] firstFrame = new Runnable[1];
+        firstFrame[0] = () -> {
+            startupTimer.mark(PHASE_FIRST_FRAME);
+            Platform.runLater(() -> loginScene.removePostLayoutPulseListener(firstFrame[0]));
+        };
+        loginScene.addPostLayoutPulseListener(firstFrame[0]);
+        
+        // Files and desktop images are loaded in parallel while the password is typed,
+        // the desktop itself is then built on the FX thread from what they produced
+        CompletableFuture<Void> files = CompletableFuture.runAsync(() -> {
+            initializeDefaultFiles();
+            startupTimer.mark(PHASE_FILES);
+        }, tasks.executor(TaskScheduler.Lane.IO));
+        CompletableFuture<Void> images = CompletableFuture.runAsync(() -> {
+            preloadHomeImages();
+            startupTimer.mark(PHASE_IMAGES);
+        }, tasks.executor(TaskScheduler.Lane.COMPUTE));
+        CompletableFuture.allOf(files, images).whenComplete((v, error) -> tasks.publish(() -> {
+            if (error != null) {
+                System.err.println("Startup did not complete cleanly: " + error.getMessage());
+            }
+            createHomeScene();
+            startupTimer.mark(PHASE_DESKTOP_BUILT);
+            if (desktopRequested) {
+                showDesktop();
+            }
+        }));
+        
+        // Setup primary stage
+        primaryStage.setTitle("RUindows");
+        primaryStage.setScene(loginScene);
+        primaryStage.setResizable(false);
+        primaryStage.setOnCloseRequest(e -> {
+            cleanupMedia();
+            Platform.exit();
+        });
+        
+        primaryStage.show();
+    }
+    
+    private void showDesktop() {
+        primaryStage.setScene(homeScene);
+        if (loginSpan != null) {
+            loginSpan.end();
+            loginSpan = null;
+        }
+        if (!startupTimer.isMarked(PHASE_DESKTOP_SHOWN)) {
+            startupTimer.mark(PHASE_DESKTOP_SHOWN);
+            if (REPORT_STARTUP) {
+                System.out.println(startupTimer);
+            }
+        }
+    }
+    
+    // Decodes what the desktop shows at the sizes it uses, so building it only hits the cache
+    private void preloadHomeImages() {
+        imageCache.get("homepage.jpg", 800, 600, false);
+        loadIcon("trash-icon.png");
+        loadIcon("notepad-icon.png");
+        loadIcon("chrome.png");
+        imageCache.get("window-icon.png", 15, 15);
+        imageCache.get("logout3-icon.png", 15, 15);
+        imageCache.get("shutdown3-icon.png", 15, 15);
+        imageCache.get("notepad-icon.png", 20, 20);
+    }
+    
+    public StartupTimer getStartupTimer() {
+        return startupTimer;
+    }
+    
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    @Override
+    public void stop() {
+        // Waiting for the saves below blocks the FX thread on purpose
+        if (stallWatchdog != null) {
+            stallWatchdog.stop();
+        }
+        
+        // Let pending saves reach the disk before exiting
+        if (autosave != null) {
+            autosave.shutdown();
+        }
+        try {
+            tasks.shutdown(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fileStore != null) {
+            try {
+                fileStore.compactIfNeeded();
+                fileStore.close();
+            } catch (IOException e) {
+                System.err.println("Could not close file store: " + e.getMessage());
+            }
+        }
+        if (METRICS_FILE != null) {
+            try {
+                metrics.dump(Paths.get(METRICS_FILE));
+            } catch (IOException e) {
+                System.err.println("Could not write metrics: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void initializeDefaultFiles() {
+        // Only the index is read here, contents are loaded when a file is opened
+        try {
+            Path storeDirectory = FileStore.defaultDirectory();
+            fileStore = FileStore.open(storeDirectory);
+            
+            // Edits journaled before a crash are folded back in first
+            autosave = new AutosaveJournal(storeDirectory.resolve("journal"), fileStore, tasks.getStoreExecutor(),
+                    this::writeJournaledTextFile);
+            autosave.recover();
+            
+            fileNames.addAll(fileStore.names(FileStore.Kind.TEXT), FileStore.Kind.TEXT);
+            fileNames.addAll(fileStore.names(FileStore.Kind.IMAGE), FileStore.Kind.IMAGE);
+            
+            // Build the search index in the background, straight from the store
+            searchIndex.addAll(fileNames.names(FileStore.Kind.TEXT), fileStore::readText);
+        } catch (IOException e) {
+            System.err.println("File store unavailable, files will not be kept: " + e.getMessage());
+        }
+        
+        // Initialize with some default content on first start
+        if (fileNames.isEmpty()) {
+            String readme = "Welcome to RUindows!\nThis is a sample text file.";
+            fileNames.add("readme.txt", FileStore.Kind.TEXT);
+            storeTextFile("readme.txt", readme);
+        }
+    }
+    
+    private CharSequence loadTextFile(String fileName) {
+        // Cold documents are decompressed or read back from the file store
+        try {
+            CharSequence content = textFiles.get(fileName);
+            return content == null ? "" : content;
+        } catch (IOException e) {
+            showAlert("Error", "Could not read " + fileName + ": " + e.getMessage());
+            return "";
+        }
+    }
+    
+    // Decodes on the calling thread, call it on the COMPUTE lane; edited is the
+    // unsaved edit of the file, taken on the FX thread, or null
+    private Image loadImageFile(String fileName, PixelPipeline.Raster edited) throws IOException {
+        if (edited != null) {
+            return photoCache.get(EDITED_IMAGE_KEY + fileName, () -> PixelPipeline.toImage(edited));
+        }
+        String key = imageKey(fileName);
+        return key == null ? null : photoCache.get(key, () -> {
+            byte[] data = fileStore != null ? fileStore.read(fileName) : encodedImages.get(fileName);
+            return data == null ? null : new Image(new ByteArrayInputStream(data));
+        });
+    }
+    
+    // From any thread, a burst of calls repaints the desktop once
+    private void refreshDesktopLater() {
+        tasks.publish(shortcutsGrid, shortcutsGrid::refresh);
+    }
+    
+    // Called when an image is added or changed, so its icon is usually ready before it is shown
+    private void prepareThumbnail(String fileName) {
+        thumbnails.prepare(fileName);
+    }
+    
+    // Icons are THUMBNAIL files in the store, or kept encoded in memory without one
+    private class ThumbnailStorage implements Thumbnails.Storage {
+        @Override
+        public String imageKey(String fileName) {
+            return Main.this.imageKey(fileName);
+        }
+        
+        @Override
+        public byte[] readImage(String fileName) throws IOException {
+            return fileStore != null ? fileStore.read(fileName) : encodedImages.get(fileName);
+        }
+        
+        @Override
+        public byte[] readThumbnail(String key) throws IOException {
+            return fileStore != null ? fileStore.read(THUMBNAIL_PREFIX + key) : encodedThumbnails.get(key);
+        }
+        
+        @Override
+        public boolean hasThumbnail(String key) {
+            return fileStore != null ? fileStore.contains(THUMBNAIL_PREFIX + key) : encodedThumbnails.containsKey(key);
+        }
+        
+        @Override
+        public void writeThumbnail(String key, byte[] data) throws IOException {
+            if (fileStore != null) {
+                fileStore.write(THUMBNAIL_PREFIX + key, FileStore.Kind.THUMBNAIL, data);
+            } else {
+                encodedThumbnails.put(key, data);
+            }
+        }
+    }
+    
+    // Names with identical content share one decoded image
+    private String imageKey(String fileName) {
+        if (fileStore != null) {
+            return fileStore.contentHash(fileName);
+        }
+        return encodedImages.containsKey(fileName) ? MEMORY_IMAGE_KEY + fileName : null;
+    }
+    
+    private void storeTextFile(String fileName, CharSequence content) {
+        long version = textFiles.put(fileName, content);
+        persistTextFile(fileName, content, version);
+        searchIndex.update(fileName, content);
+    }
+    
+    // Text for search snippets, read without making the document resident so
+    // searching does not push the documents in use out of memory
+    private CharSequence readSnippetText(String fileName) throws IOException {
+        CharSequence content = textFiles.peek(fileName);
+        if (content != null || fileStore == null) {
+            return content;
+        }
+        return fileStore.readText(fileName);
+    }
+    
+    private void persistTextFile(String fileName, CharSequence content, long version) {
+        if (fileStore == null) {
+            return;
+        }
+        tasks.execute(TaskScheduler.Lane.STORE, () -> {
+            try {
+                writeTextFile(fileName, content);
+                textFiles.markPersisted(fileName, version);
+            } catch (IOException e) {
+                showAlertLater("Error", "Could not save " + fileName + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    // On the store thread; once the caller marks it persisted the resident copy may be dropped
+    private void writeTextFile(String fileName, CharSequence content) throws IOException {
+        UiEvents.WriteTextFile event = new UiEvents.WriteTextFile();
+        Metrics.Span span = metrics.start("file.write", event);
+        event.fileName = fileName;
+        event.length = content.length();
+        try {
+            fileStore.writeText(fileName, content);
+        } finally {
+            span.end();
+        }
+    }
+    
+    // Autosave folding its journal into the store, on the store thread. The
+    // resident copy and the search index follow on the FX thread, in order with
+    // saves, unless a save from the window has overtaken the snapshot meanwhile.
+    private void writeJournaledTextFile(String fileName, CharSequence content, long sequence) throws IOException {
+        writeTextFile(fileName, content);
+        tasks.publish(() -> {
+            if (autosave.isCurrent(fileName, sequence)) {
+                long version = textFiles.put(fileName, content);
+                textFiles.markPersisted(fileName, version);
+                searchIndex.update(fileName, content);
+            }
+        });
+    }
+    
+    private void createLoginScene() {
+        StackPane root = new StackPane();
+        
+        // Background, decoded at display size in the background over the fallback gradient
+        root.setStyle("-fx-background-color: linear-gradient(to bottom, #87CEEB, #98FB98);");
+        try {
+            ImageView background = new ImageView();
+            background.setImage(imageCache.getAsync("nature.jpg", 800, 600, false));
+            background.setFitWidth(800);
+            background.setFitHeight(600);
+            background.setPreserveRatio(false);
+            root.getChildren().add(background);
+        } catch (Exception e) {
+            // Fallback background
+            root.setStyle("-fx-background-color: linear-gradient(to bottom, #87CEEB, #98FB98);");
+        }
+        
+        VBox loginBox = new VBox(20);
+        loginBox.setAlignment(Pos.CENTER);
+        loginBox.setMaxWidth(300);
+        
+        // Profile picture
+        StackPane profilePane = new StackPane();
+        
+        ImageView profile = new ImageView();
+        profile.setImage(imageCache.get("default_profile_pic.png", 80, 80));
+        profile.setFitWidth(80);
+        profile.setFitHeight(80);
+        profile.setTranslateY(20);
+        
+        profilePane.getChildren().add(profile);
+        
+        // Welcome label
+        Label welcomeLabel = new Label("Welcome RU24-2!");
+        welcomeLabel.setStyle("-fx-text-fill: white; -fx-font-size: 24px; -fx-font-weight: bold;");
+        
+        // Password field
+        PasswordField passwordField = new PasswordField();
+        passwordField.setPromptText("Password");
+        passwordField.setPrefWidth(200);
+        passwordField.setStyle("-fx-background-radius: 20; -fx-padding: 10;");
+        
+        // Login button
+        Button loginButton = new Button("Login");
+        loginButton.setStyle("-fx-background-color: #4CAF50; -fx-text-fill: white; -fx-background-radius: 20; -fx-padding: 10 20;");
+        
+        // Error label
+        Label errorLabel = new Label("Wrong password!");
+        errorLabel.setStyle("-fx-text-fill: red; -fx-font-size: 16px; -fx-font-weight: bold;");
+        errorLabel.setVisible(false);
+        
+        // Login form
+        HBox loginForm = new HBox(10);
+        loginForm.setAlignment(Pos.CENTER);
+        loginForm.getChildren().addAll(passwordField, loginButton);
+        
+        loginBox.getChildren().addAll(profilePane, welcomeLabel, loginForm, errorLabel);
+        
+        // Login functionality
+        Runnable loginAction = () -> {
+            UiEvents.Login event = new UiEvents.Login();
+            Metrics.Span span = metrics.start("login", event);
+            String password = passwordField.getText();
+            if (CORRECT_PASSWORD.equals(password)) {
+                // Ends once the desktop is shown, which may have to wait for it to be built
+                event.success = true;
+                event.waitedForDesktop = homeScene == null;
+                loginSpan = span;
+                if (homeScene != null) {
+                    showDesktop();
+                } else {
+                    desktopRequested = true;
+                }
+                passwordField.clear();
+                errorLabel.setVisible(false);
+            } else {
+                errorLabel.setVisible(true);
+                passwordField.clear();
+                
+                // Shake animation
+                TranslateTransition shake = new TranslateTransition(Duration.millis(50), loginForm);
+                shake.setFromX(0);
+                shake.setToX(10);
+                shake.setCycleCount(6);
+                shake.setAutoReverse(true);
+                shake.play();
+                span.end();
+            }
+        };
+        
+        loginButton.setOnAction(e -> loginAction.run());
+        passwordField.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                loginAction.run();
+            }
+        });
+        
+        root.getChildren().add(loginBox);
+        loginScene = new Scene(root, 800, 600);
+    }
+    
+    private void createHomeScene() {
+        BorderPane root = new BorderPane();
+        
+        // Background
+        try {
+            ImageView background = new ImageView();
+            background.setImage(imageCache.get("homepage.jpg", 800, 600, false));
+            background.setFitWidth(800);
+            background.setFitHeight(600);
+            background.setPreserveRatio(false);
+            StackPane backgroundPane = new StackPane(background);
+            root.getChildren().add(backgroundPane);
+        } catch (Exception e) {
+            root.setStyle("-fx-background-color: linear-gradient(to bottom, #87CEEB, #98FB98);");
+        }
+        
+        // Shortcuts area, only the visible shortcuts are backed by nodes
+        shortcutsGrid = new DesktopView(MAX_SHORTCUTS_PER_COLUMN);
+        shortcutsGrid.setPrefixLookup(prefix -> {
+            List<String> matches = fileNames.withPrefix(prefix, 1);
+            return matches.isEmpty() ? null : matches.get(0);
+        });
+        
+        // Create default shortcuts
+        createDefaultShortcuts();
+        
+        root.setCenter(shortcutsGrid);
+        
+        // Task bar, with the progress of a folder import above it while one runs
+        createTaskBar();
+        importBar.setAlignment(Pos.CENTER_LEFT);
+        importBar.setPadding(new Insets(5, 10, 5, 10));
+        importBar.setStyle("-fx-background-color: #34495E;");
+        importLabel.setStyle("-fx-text-fill: white;");
+        importProgress.setPrefWidth(300);
+        importBar.managedProperty().bind(importBar.visibleProperty());
+        importBar.setVisible(false);
+        root.setBottom(new VBox(importBar, taskBar));
+        
+        homeScene = new Scene(root, 800, 600);
+        // Styled and laid out now, so switching to it after login is instant
+        root.applyCss();
+        root.layout();
+    }
+    
+    private void createDefaultShortcuts() {
+        UiEvents.CreateShortcuts event = new UiEvents.CreateShortcuts();
+        Metrics.Span span = metrics.start("desktop.createShortcuts", event);
+        
+        // Clear existing shortcuts
+        shortcutsGrid.clear();
+        List<DesktopShortcut> shortcuts = new ArrayList<>();
+        
+        // Trash shortcut
+        DesktopShortcut trashShortcut = createShortcut(loadIcon("trash-icon.png"), "Trash", () -> {
+            showAlert("Trash", "Trash functionality not implemented yet.");
+        });
+        
+        // Notepad shortcut
+        DesktopShortcut notepadShortcut = createShortcut(loadIcon("notepad-icon.png"), "Notepad", () -> {
+            openNotepadApplication();
+        });
+        
+        // ChRUme shortcut
+        DesktopShortcut chromeShortcut = createShortcut(loadIcon("chrome.png"), "ChRUme", () -> {
+            openChRUmeApplication();
+        });
+        
+        shortcuts.add(trashShortcut);
+        shortcuts.add(notepadShortcut);
+        shortcuts.add(chromeShortcut);
+        
+        // Add existing text files
+        Image textIcon = loadIcon("notepad-icon.png");
+        for (String fileName : fileNames.names(FileStore.Kind.TEXT)) {
+            shortcuts.add(createShortcut(textIcon, fileName, () -> {
+                openTextFileApplication(fileName);
+            }));
+        }
+        
+        // Add existing image files
+        for (String fileName : fileNames.names(FileStore.Kind.IMAGE)) {
+            shortcuts.add(createImageShortcut(fileName, () -> {
+                openPhotoEditorApplication(fileName);
+            }));
+        }
+        
+        // One layout pass for the whole desktop
+        shortcutsGrid.addAll(shortcuts);
+        
+        event.shortcutCount = shortcuts.size();
+        event.textFileCount = fileNames.size(FileStore.Kind.TEXT);
+        event.imageFileCount = fileNames.size(FileStore.Kind.IMAGE);
+        span.end();
+    }
+    
+    private Image loadIcon(String path) {
+        return shortcutFactory.icon(path);
+    }
+    
+    private DesktopShortcut createShortcut(Image icon, String name, Runnable action) {
+        return shortcutFactory.create(icon, name, action);
+    }
+    
+    // The thumbnail is loaded in the background once the shortcut is shown
+    private DesktopShortcut createImageShortcut(String fileName, Runnable action) {
+        return shortcutFactory.createImage(fileName, action);
+    }
+    
+    private void addShortcutToGrid(DesktopShortcut shortcut) {
+        shortcutsGrid.add(shortcut);
+    }
+    
+    private void createTaskBar() {
+        taskBar = new MenuBar();
+        taskBar.setStyle("-fx-background-color: #2C3E50;");
+        
+        // Window menu
+        Menu windowMenu = new Menu();
+        ImageView windowIcon = new ImageView();
+        windowIcon.setImage(imageCache.get("window-icon.png", 15, 15));
+        windowIcon.setFitWidth(15);
+        windowIcon.setFitHeight(15);
+        windowIcon.setStyle("-fx-text-fill: white; -fx-font-size: 12px;");
+        windowMenu.setGraphic(windowIcon);
+        
+        ImageView logoutIcon = new ImageView();
+        logoutIcon.setImage(imageCache.get("logout3-icon.png", 15, 15));
+        logoutIcon.setFitWidth(15);
+        logoutIcon.setFitHeight(15);
+        MenuItem logoutItem = new MenuItem("Log out");
+        logoutItem.setGraphic(logoutIcon);
+        logoutItem.setOnAction(e -> {
+            cleanupMedia();
+            primaryStage.setScene(loginScene);
+        });
+        
+        ImageView shutdownIcon = new ImageView();
+        shutdownIcon.setImage(imageCache.get("shutdown3-icon.png", 15, 15));
+        shutdownIcon.setFitWidth(15);
+        shutdownIcon.setFitHeight(15);
+        MenuItem shutdownItem = new MenuItem("Shutdown");
+        shutdownItem.setGraphic(shutdownIcon);
+        shutdownItem.setOnAction(e -> {
+            cleanupMedia();
+            Platform.exit();
+        });
+        
+        MenuItem taskManagerItem = new MenuItem("Task Manager");
+        taskManagerItem.setOnAction(e -> openTaskManagerApplication());
+        
+        importFolderItem = new MenuItem("Import Folder...");
+        importFolderItem.setOnAction(e -> importFolder());
+        
+        windowMenu.getItems().addAll(taskManagerItem, importFolderItem, new SeparatorMenuItem(), logoutItem,
+                shutdownItem);
+        
+        // Notepad menu
+        Menu notepadMenu = new Menu();
+        ImageView notepadIcon = new ImageView();
+        notepadIcon.setImage(imageCache.get("notepad-icon.png", 20, 20));
+        notepadIcon.setFitWidth(20);
+        notepadIcon.setFitHeight(20);
+        notepadIcon.setStyle("-fx-text-fill: white; -fx-font-size: 12px;");
+        notepadMenu.setGraphic(notepadIcon);
+        notepadMenu.setOnShowing(e -> openNotepadApplication());
+        
+        // Search menu, results come from the full-text index
+        Menu searchMenu = new Menu();
+        Label searchLabel = new Label("Search");
+        searchLabel.setStyle("-fx-text-fill: white; -fx-font-size: 12px;");
+        searchMenu.setGraphic(searchLabel);
+        
+        TextField searchField = new TextField();
+        searchField.setPromptText("Search files...");
+        searchField.setPrefWidth(250);
+        CustomMenuItem searchFieldItem = new CustomMenuItem(searchField, false);
+        searchMenu.getItems().add(searchFieldItem);
+        searchMenu.setOnShown(e -> searchField.requestFocus());
+        
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> {
+            // Only the latest results are shown when several arrive within one pulse
+            searchIndex.searchAsync(newVal, MAX_SEARCH_RESULTS, results -> tasks.publish(searchMenu, () -> {
+                if (!newVal.equals(searchField.getText())) {
+                    return;
+                }
+                searchMenu.getItems().setAll(searchFieldItem);
+                if (results.isEmpty() && !newVal.isBlank()) {
+                    MenuItem noResults = new MenuItem("No results");
+                    noResults.setDisable(true);
+                    searchMenu.getItems().add(noResults);
+                }
+                for (SearchIndex.Result result : results) {
+                    MenuItem resultItem = new MenuItem(result.getName() + "  " + result.getSnippet());
+                    resultItem.setOnAction(ev -> openTextFileApplication(result.getName()));
+                    searchMenu.getItems().add(resultItem);
+                }
+            }));
+        });
+        
+        taskBar.getMenus().addAll(windowMenu, notepadMenu, searchMenu);
+    }
+    
+    private void openNotepadApplication() {
+        UiEvents.OpenWindow event = new UiEvents.OpenWindow();
+        Metrics.Span span = metrics.start("window.notepad", event);
+        event.application = "Notepad";
+        Stage notepadStage = new Stage();
+        notepadStage.setTitle("Notepad");
+        
+        BorderPane root = new BorderPane();
+        
+        // Menu bar
+        MenuBar menuBar = new MenuBar();
+        Menu fileMenu = new Menu("File");
+        MenuItem saveItem = new MenuItem("Save");
+        fileMenu.getItems().add(saveItem);
+        menuBar.getMenus().add(fileMenu);
+        
+        // Editor, saving hands over a snapshot instead of copying the text
+        RopeEditor editor = new RopeEditor();
+        
+        saveItem.setOnAction(e -> saveTextFile(editor.getDocument(), notepadStage));
+        
+        root.setTop(menuBar);
+        root.setCenter(editor);
+        
+        Scene scene = new Scene(root, 600, 400);
+        notepadStage.setScene(scene);
+        notepadStage.show();
+        span.end();
+    }
+    
+    private void openTextFileApplication(String fileName) {
+        UiEvents.OpenWindow event = new UiEvents.OpenWindow();
+        Metrics.Span span = metrics.start("window.textFile", event);
+        event.application = "Notepad";
+        event.fileName = fileName;
+        Stage textFileStage = new Stage();
+        textFileStage.setTitle(fileName);
+        
+        BorderPane root = new BorderPane();
+        
+        // Menu bar
+        MenuBar menuBar = new MenuBar();
+        Menu fileMenu = new Menu("File");
+        MenuItem saveItem = new MenuItem("Save");
+        CheckMenuItem autosaveItem = new CheckMenuItem("Autosave");
+        fileMenu.getItems().addAll(saveItem, autosaveItem);
+        menuBar.getMenus().add(fileMenu);
+        
+        // Editor with existing content
+        RopeEditor editor = new RopeEditor();
+        editor.setDocument(loadTextFile(fileName));
+        event.length = editor.getDocument().length();
+        
+        // Last content handed to the store from this window, and the autosave journal if on
+        Rope[] stored = {editor.getDocument()};
+        AutosaveJournal.Session[] session = {null};
+        Runnable saveIfChanged = () -> {
+            if (editor.getDocument() != stored[0]) {
+                stored[0] = editor.getDocument();
+                storeTextFile(fileName, stored[0]);
+            }
+        };
+        
+        editor.addEditListener((start, removedLength, inserted) -> {
+            if (session[0] != null) {
+                session[0].record(start, removedLength, inserted, editor.getDocument());
+            }
+        });
+        
+        saveItem.setOnAction(e -> {
+            stored[0] = editor.getDocument();
+            storeTextFile(fileName, stored[0]);
+            if (session[0] != null) {
+                session[0].rebase();
+            }
+            showAlert("Save", "File saved successfully!");
+        });
+        
+        // Autosave journals edits in the background and folds them into the stored file
+        autosaveItem.selectedProperty().addListener((obs, wasOn, on) -> {
+            saveIfChanged.run();
+            if (on) {
+                session[0] = autosave.open(fileName);
+            } else if (session[0] != null) {
+                session[0].close();
+                session[0] = null;
+            }
+        });
+        if (autosave != null && !autosave.isOpen(fileName)) {
+            autosaveItem.setSelected(true);
+        } else {
+            autosaveItem.setDisable(true);
+        }
+        
+        root.setTop(menuBar);
+        root.setCenter(editor);
+        
+        Scene scene = new Scene(root, 600, 400);
+        textFileStage.setScene(scene);
+        textFileStage.setOnHidden(e -> {
+            if (session[0] != null) {
+                saveIfChanged.run();
+                session[0].close();
+                session[0] = null;
+            }
+        });
+        textFileStage.show();
+        span.end();
+    }
+    
+    private void openChRUmeApplication() {
+        UiEvents.OpenWindow event = new UiEvents.OpenWindow();
+        Metrics.Span span = metrics.start("window.chrume", event);
+        event.application = "ChRUme";
+        Stage chromeStage = new Stage();
+        chromeStage.setTitle("ChRUme");
+        
+        BorderPane root = new BorderPane();
+        
+        // Search bar
+        HBox searchBar = new HBox(10);
+        searchBar.setPadding(new Insets(10));
+        searchBar.setAlignment(Pos.CENTER);
+        
+        Button backButton = new Button("<");
+        Button forwardButton = new Button(">");
+        
+        TextField searchField = new TextField();
+        searchField.setPromptText("Enter URL...");
+        searchField.setPrefWidth(400);
+        
+        Button searchButton = new Button("Search");
+        Button newTabButton = new Button("+");
+        
+        searchBar.getChildren().addAll(backButton, forwardButton, searchField, searchButton, newTabButton);
+        
+        // Tabs, each with its own history, keeping their built pages in the shared cache
+        TabPane tabPane = new TabPane();
+        Supplier<BrowserTab> openTab = () -> {
+            BrowserTab tab = new BrowserTab(pageCache, this::buildPage,
+                    page -> mediaManager.pause(page), page -> mediaManager.resume(page));
+            tabPane.getTabs().add(tab);
+            tabPane.getSelectionModel().select(tab);
+            return tab;
+        };
+        
+        // The bar always reflects the selected tab, and only its page plays
+        tabPane.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
+            backButton.disableProperty().unbind();
+            forwardButton.disableProperty().unbind();
+            if (oldVal != null) {
+                ((BrowserTab) oldVal).suspend();
+            }
+            if (newVal == null) {
+                return;
+            }
+            BrowserTab tab = (BrowserTab) newVal;
+            tab.resume();
+            backButton.disableProperty().bind(tab.canGoBackProperty().not());
+            forwardButton.disableProperty().bind(tab.canGoForwardProperty().not());
+            searchField.setText(tab.urlProperty().get());
+        });
+        tabPane.getTabs().addListener((ListChangeListener<Tab>) change -> {
+            if (tabPane.getTabs().isEmpty()) {
+                chromeStage.close();
+            }
+        });
+        
+        Runnable searchAction = () -> {
+            BrowserTab tab = (BrowserTab) tabPane.getSelectionModel().getSelectedItem();
+            tab.navigate(searchField.getText().trim());
+        };
+        
+        searchButton.setOnAction(e -> searchAction.run());
+        searchField.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                searchAction.run();
+            }
+        });
+        backButton.setOnAction(e -> {
+            BrowserTab tab = (BrowserTab) tabPane.getSelectionModel().getSelectedItem();
+            tab.goBack();
+            searchField.setText(tab.urlProperty().get());
+        });
+        forwardButton.setOnAction(e -> {
+            BrowserTab tab = (BrowserTab) tabPane.getSelectionModel().getSelectedItem();
+            tab.goForward();
+            searchField.setText(tab.urlProperty().get());
+        });
+        newTabButton.setOnAction(e -> {
+            openTab.get();
+            searchField.requestFocus();
+        });
+        
+        openTab.get();
+        
+        root.setTop(searchBar);
+        root.setCenter(tabPane);
+        
+        // Media belongs to the pages, so the window counts what all of its tabs keep
+        WindowMonitor.setResources(chromeStage, new WindowMonitor.Resources() {
+            @Override
+            public Collection<?> mediaOwners() {
+                List<Object> owners = new ArrayList<>();
+                owners.add(chromeStage);
+                for (Tab tab : tabPane.getTabs()) {
+                    owners.addAll(((BrowserTab) tab).getCachedPages());
+                }
+                return owners;
+            }
+            
+            @Override
+            public long extraImageBytes() {
+                return 0;
+            }
+        });
+        
+        Scene scene = new Scene(root, 800, 600);
+        chromeStage.setScene(scene);
+        chromeStage.setOnHidden(e -> {
+            // Release the pages, players and timelines of every tab
+            for (Tab tab : tabPane.getTabs()) {
+                ((BrowserTab) tab).dispose();
+            }
+        });
+        chromeStage.show();
+        span.end();
+    }
+    
+    private Node buildPage(String url, BrowserTab.Page page) {
+        UiEvents.BuildPage event = new UiEvents.BuildPage();
+        Metrics.Span span;
+        StackPane contentArea = new StackPane();
+        if (url.isEmpty()) {
+            span = metrics.start("page.empty", event);
+            showEmptyContent(contentArea);
+        } else if ("RUtube.net".equals(url)) {
+            span = metrics.start("page.rutube", event);
+            showRUtubeContent(contentArea, page);
+        } else if ("RUtify.net".equals(url)) {
+            span = metrics.start("page.rutify", event);
+            showRUtifyContent(contentArea, page);
+        } else if ("stockimages.net".equals(url)) {
+            span = metrics.start("page.stockImages", event);
+            showStockImagesContent(contentArea);
+        } else {
+            span = metrics.start("page.notFound", event);
+            showDomainNotFoundContent(contentArea, url);
+        }
+        event.url = url;
+        // Counting walks the page, so only when a recording wants it
+        if (event.isEnabled()) {
+            event.nodeCount = WindowMonitor.countNodes(contentArea);
+        }
+        span.end();
+        return contentArea;
+    }
+    
+    private void releasePage(BrowserTab.Page page) {
+        // Stop its media and let the image cache reclaim its pictures
+        mediaManager.release(page);
+        releaseImages(page.getRoot());
+    }
+    
+    private void releaseImages(Node node) {
+        if (node instanceof ImageView) {
+            ((ImageView) node).setImage(null);
+        } else if (node instanceof MediaView) {
+            ((MediaView) node).setMediaPlayer(null);
+        } else if (node instanceof ScrollPane) {
+            releaseImages(((ScrollPane) node).getContent());
+        } else if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                releaseImages(child);
+            }
+        }
+    }
+    
+    private void showEmptyContent(StackPane contentArea) {
+        contentArea.getChildren().clear();
+        Label emptyLabel = new Label("Welcome to ChRUme\nEnter a URL to browse");
+        emptyLabel.setStyle("-fx-font-size: 24px; -fx-text-alignment: center;");
+        contentArea.getChildren().add(emptyLabel);
+    }
+    
+    private void showDomainNotFoundContent(StackPane contentArea, String domain) {
+        contentArea.getChildren().clear();
+        VBox errorBox = new VBox(10);
+        errorBox.setAlignment(Pos.CENTER);
+        
+        Label errorTitle = new Label("This site can't be reached");
+        errorTitle.setStyle("-fx-font-size: 24px; -fx-font-weight: bold;");
+        
+        Label errorMessage = new Label(domain + " does not exist");
+        errorMessage.setStyle("-fx-font-size: 16px;");
+        
+        errorBox.getChildren().addAll(errorTitle, errorMessage);
+        contentArea.getChildren().add(errorBox);
+    }
+    
+    private void showRUtubeContent(StackPane contentArea, Object owner) {
+        contentArea.getChildren().clear();
+        
+        VBox videoBox = new VBox(10);
+        videoBox.setAlignment(Pos.CENTER);
+        
+        // Logo
+        HBox logoBox = new HBox();
+        logoBox.setAlignment(Pos.TOP_LEFT);
+        logoBox.setPadding(new Insets(10));
+        ImageView ytIcon = new ImageView();
+        ytIcon.setImage(imageCache.get("youtube-logo.png", 25, 25));
+        ytIcon.setFitWidth(25);
+        ytIcon.setFitHeight(25);
+        Label logo = new Label("RUtube");
+        logo.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: red;");
+        logoBox.getChildren().addAll(ytIcon, logo);
+        
+        // Video placeholder
+//        File videoFile = new File("DiamondJack.mp4");
+        MediaPlayer mediaPlayer = acquireMedia(owner, "DiamondJack.mp4");
+        MediaView viewMedia = new MediaView(mediaPlayer);
+        
+        viewMedia.setFitHeight(350);
+        viewMedia.setFitWidth(350);
+        
+        StackPane videoPane = new StackPane(viewMedia);
+        if (mediaPlayer == null) {
+            videoPane.getChildren().add(new Label("Video unavailable"));
+        }
+        
+        // Controls
+        HBox controls = new HBox(10);
+        controls.setAlignment(Pos.CENTER);
+        
+        Button playButton = new Button("Play");
+        Button pauseButton = new Button("Pause");
+        
+        controls.getChildren().addAll(playButton, pauseButton);
+        
+        videoBox.getChildren().addAll(logoBox, videoPane, controls);
+        contentArea.getChildren().add(videoBox);
+        
+        if (mediaPlayer == null) {
+            controls.setDisable(true);
+            return;
+        }
+        
+        // Simple play/pause simulation
+        playButton.setOnAction(e -> {
+        	mediaPlayer.play();
+        });
+        
+        pauseButton.setOnAction(e -> {
+        	mediaPlayer.pause();
+        });
+    }
+    
+    private void showRUtifyContent(StackPane contentArea, Object owner) {
+        contentArea.getChildren().clear();
+        
+        VBox audioBox = new VBox(20);
+        audioBox.setAlignment(Pos.CENTER);
+        
+        // Logo
+        HBox logoBox = new HBox();
+        logoBox.setAlignment(Pos.TOP_LEFT);
+        logoBox.setPadding(new Insets(10));
+        ImageView spotifyIcon = new ImageView();
+        spotifyIcon.setImage(imageCache.get("spotify-logo.png", 25, 25));
+        spotifyIcon.setFitWidth(25);
+        spotifyIcon.setFitHeight(25);
+        Label logo = new Label("RUtify");
+        logo.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: green;");
+        logoBox.getChildren().addAll(spotifyIcon, logo);
+        
+        // Audio controls
+        Slider audioSlider = new Slider(0, 100, 0);
+        audioSlider.setPrefWidth(300);
+        
+        HBox controls = new HBox(10);
+        controls.setAlignment(Pos.CENTER);
+        
+        Button playButton = new Button("Play");
+        Button pauseButton = new Button("Pause");
+        
+        controls.getChildren().addAll(playButton, pauseButton);
+        
+//        File audioFile = new File("PromQueen.mp3");
+        MediaPlayer viewAudio = acquireMedia(owner, "PromQueen.mp3");
+        if (viewAudio == null) {
+            controls.setDisable(true);
+            audioBox.getChildren().addAll(logoBox, new Label("Audio unavailable"), audioSlider, controls);
+            contentArea.getChildren().add(audioBox);
+            return;
+        }
+        
+        viewAudio.setOnReady(() -> {
+        	Duration duration = viewAudio.getMedia().getDuration();
+        	audioSlider.setMaxHeight(duration.toSeconds());
+        });
+        
+        // The player may be shared with an earlier visit, so the listener goes with this page
+        ChangeListener<Duration> progress = (obs, oldVal, newVal) -> {
+        	audioSlider.setValue(newVal.toSeconds());
+        };
+        viewAudio.currentTimeProperty().addListener(progress);
+        mediaManager.onRelease(owner, () -> viewAudio.currentTimeProperty().removeListener(progress));
+
+        audioBox.getChildren().addAll(logoBox, audioSlider, controls);
+        contentArea.getChildren().add(audioBox);
+        
+        // Simple audio simulation
+        Timeline audioProgress = new Timeline(
+            new KeyFrame(Duration.millis(100), e -> {
+                if (audioSlider.getValue() < 100) {
+                    audioSlider.setValue(audioSlider.getValue() + 0.5);
+                }
+            })
+        );
+        audioProgress.setCycleCount(Timeline.INDEFINITE);
+        mediaManager.track(owner, audioProgress);
+        
+        // A reused player is already ready, so autoplay alone would not start it
+        viewAudio.setAutoPlay(true);
+        viewAudio.play();
+        
+        playButton.setOnAction(e -> {
+            viewAudio.play();
+        });
+        
+        pauseButton.setOnAction(e -> {
+            viewAudio.pause();
+        });
+    }
+    
+    private void showStockImagesContent(StackPane contentArea) {
+        contentArea.getChildren().clear();
+        
+        ScrollPane scrollPane = new ScrollPane();
+        VBox imageBox = new VBox(20);
+        imageBox.setPadding(new Insets(20));
+        imageBox.setAlignment(Pos.CENTER);
+        
+        // Create sample images with download buttons
+        String[] imageNames = {"orangecat.jpg", "graycat.jpg", "blackcat.jpg", "graycat2.jpg"};
+        String[] imageSources = {"cat-image1.jpg", "cat-image2.jpg", "cat-image3.jpeg", "cat-image4.jpeg"};
+        ImageView[] imageFiles = new ImageView[imageSources.length];
+        for (int i = 0; i < imageSources.length; i++) {
+            // Thumbnails decode in the background at display size and stay cached between visits
+            imageFiles[i] = new ImageView(imageCache.getAsync(imageSources[i], GALLERY_THUMBNAIL_WIDTH, GALLERY_THUMBNAIL_HEIGHT, false));
+            imageFiles[i].setFitWidth(GALLERY_THUMBNAIL_WIDTH);
+            imageFiles[i].setFitHeight(GALLERY_THUMBNAIL_HEIGHT);
+        }
+        
+        for (int i = 0; i < imageNames.length; i++) {
+            VBox imageContainer = new VBox(10);
+            imageContainer.setAlignment(Pos.CENTER);
+            
+            // Create a colored rectangle as placeholder until the cat image is decoded
+            Rectangle imagePlaceholder = new Rectangle(GALLERY_THUMBNAIL_WIDTH, GALLERY_THUMBNAIL_HEIGHT);
+            Color[] colors = {Color.ORANGE, Color.GRAY, Color.BLACK, Color.LIGHTGRAY};
+            imagePlaceholder.setFill(colors[i]);
+            
+//            Label imageLabel = new Label("[CAT] " + imageFiles[i]);
+//            imageLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: white; -fx-background-color: rgba(0,0,0,0.7); -fx-padding: 5;");
+            
+            StackPane imagePane = new StackPane(imagePlaceholder, imageFiles[i]);
+            
+            Button downloadButton = new Button("Download");
+            ProgressBar downloadProgress = new ProgressBar(0);
+            downloadProgress.setPrefWidth(GALLERY_THUMBNAIL_WIDTH);
+            downloadProgress.setVisible(false);
+            final String imageName = imageNames[i];
+            final String imageSource = imageSources[i];
+            
+            downloadButton.setOnAction(e -> downloadImage(imageName, imageSource, downloadProgress));
+            
+            imageContainer.getChildren().addAll(imagePane, downloadButton, downloadProgress);
+            imageBox.getChildren().add(imageContainer);
+        }
+        
+        scrollPane.setContent(imageBox);
+        scrollPane.setFitToWidth(true);
+        contentArea.getChildren().add(scrollPane);
+    }
+    
+    private void downloadImage(String defaultName, String source, ProgressBar progressBar) {
+        TextInputDialog dialog = new TextInputDialog(defaultName);
+        dialog.setTitle("Download Image");
+        dialog.setHeaderText("Enter image file name:");
+        dialog.setContentText("File name:");
+        suggestExistingNames(dialog.getEditor(), FileStore.Kind.IMAGE);
+        
+        Optional<String> result = dialog.showAndWait();
+        result.ifPresent(userInput -> {
+            String fileName = userInput;
+            
+            if (!isAlphanumeric(fileName.replace(".jpg", ""))) {
+                showAlert("Error", "File name must be alphanumeric!");
+                return;
+            }
+            
+            if (!fileName.endsWith(".jpg")) {
+                fileName += ".jpg";
+            }
+            
+            // Claiming the name is atomic, so no other task can take it in between
+            if (!fileNames.add(fileName, FileStore.Kind.IMAGE)) {
+                showAlert("Error", "File name must be unique!");
+                return;
+            }
+            
+            // Create final variable for lambda access
+            final String finalFileName = fileName;
+            
+            // Timed from the name being claimed to the shortcut being added
+            UiEvents.DownloadImage event = new UiEvents.DownloadImage();
+            Metrics.Span span = metrics.start("file.download", event);
+            event.fileName = finalFileName;
+            event.source = source;
+            
+            // The bytes are streamed into the store in the background, the page stays usable
+            progressBar.setProgress(0);
+            progressBar.setVisible(true);
+            AtomicLong total = new AtomicLong(1);
+            // Only the latest progress of this bar is applied in each pulse
+            FileStore.Progress progress = (done, size) -> {
+                total.set(size);
+                tasks.publish(progressBar, () -> progressBar.setProgress((double) done / Math.max(1, size)));
+            };
+            
+            // A download is not tied to the browser window, the file is the user's once named
+            tasks.submit(null, TaskScheduler.Lane.IO, () -> {
+                transferImage(finalFileName, source, progress);
+                event.bytes = total.get();
+                if (event.isEnabled()) {
+                    int[] size = imageDimensions(source);
+                    event.width = size[0];
+                    event.height = size[1];
+                }
+                prepareThumbnail(finalFileName);
+                return null;
+            }, (v, error) -> {
+                if (error != null) {
+                    fileNames.remove(finalFileName);
+                    span.end();
+                    progressBar.setVisible(false);
+                    showAlertLater("Error", "Could not download " + finalFileName + ": " + error.getMessage());
+                    return;
+                }
+                
+                // Add shortcut to home page
+                progressBar.setProgress(1);
+                DesktopShortcut imageShortcut = createImageShortcut(finalFileName, () -> {
+                    openPhotoEditorApplication(finalFileName);
+                });
+                addShortcutToGrid(imageShortcut);
+                event.success = true;
+                span.end();
+            });
+        });
+    }
+    
+    // Width and height of a bundled image from its header, without decoding it
+    private int[] imageDimensions(String source) throws IOException {
+        URL url = getClass().getResource("/" + source);
+        if (url == null) {
+            return new int[] {0, 0};
+        }
+        try (InputStream in = url.openStream(); ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = imageIn == null ? Collections.emptyIterator()
+                    : ImageIO.getImageReaders(imageIn);
+            if (!readers.hasNext()) {
+                return new int[] {0, 0};
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                return new int[] {reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    private void transferImage(String fileName, String source, FileStore.Progress progress) throws IOException {
+        URL url = getClass().getResource("/" + source);
+        if (url == null) {
+            throw new IOException("No such image: " + source);
+        }
+        
+        // A local file goes straight from its channel into the store
+        if ("file".equals(url.getProtocol()) && fileStore != null) {
+            try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                fileStore.transfer(fileName, FileStore.Kind.IMAGE, channel, channel.size(), progress);
+                return;
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        
+        URLConnection connection = url.openConnection();
+        long size = connection.getContentLengthLong();
+        try (InputStream in = connection.getInputStream()) {
+            if (fileStore == null) {
+                // Nothing to stream into, keep the encoded picture in memory only
+                byte[] data = in.readAllBytes();
+                encodedImages.put(fileName, data);
+                progress.update(data.length, data.length);
+            } else if (size >= 0) {
+                try (ReadableByteChannel channel = Channels.newChannel(in)) {
+                    fileStore.transfer(fileName, FileStore.Kind.IMAGE, channel, size, progress);
+                }
+            } else {
+                byte[] data = in.readAllBytes();
+                fileStore.write(fileName, FileStore.Kind.IMAGE, data);
+                progress.update(data.length, data.length);
+            }
+        }
+    }
+    
+    private void openPhotoEditorApplication(String fileName) {
+        UiEvents.OpenWindow event = new UiEvents.OpenWindow();
+        Metrics.Span span = metrics.start("window.photoEditor", event);
+        event.application = "Photo Editor";
+        event.fileName = fileName;
+        Stage photoStage = new Stage();
+        photoStage.setTitle(fileName);
+        
+        BorderPane root = new BorderPane();
+        
+        // Menu bar
+        MenuBar menuBar = new MenuBar();
+        Menu zoomMenu = new Menu("Zoom");
+        Menu editMenu = new Menu("Edit");
+        
+        menuBar.getMenus().addAll(zoomMenu, editMenu);
+        
+        // Image view, only the tiles in the viewport are drawn, from the pyramid
+        // level closest to the zoom; dragging over it selects the area to crop to
+        TiledImageView imageView = new TiledImageView(tasks, photoStage);
+        imageView.setOnBuildFailed(error -> showAlertLater("Error",
+                "Could not prepare " + fileName + " for zooming: " + error.getMessage()));
+        // Once the pyramid holds the pixels the decoded photo is not cached any
+        // more, and the levels count against the image budget instead
+        imageView.setOnPyramidReady(released -> {
+            photoCache.remove(released);
+            photoCache.reserve(imageView, imageView.getPixelBytes());
+        });
+        photoStage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> photoCache.reserve(imageView, 0));
+        
+        // The photo is decoded in the background and the span ends once it is
+        // shown; closing the window before that drops both
+        PixelPipeline.Raster edited = unsavedEdits.get(fileName);
+        TaskScheduler.Work<Image> decode = () -> loadImageFile(fileName, edited);
+        tasks.submit(photoStage, TaskScheduler.Lane.COMPUTE, decode, (image, error) -> {
+            if (error != null) {
+                showAlertLater("Error", "Could not open " + fileName + ": " + error.getMessage());
+            } else {
+                imageView.setImage(image, edited);
+            }
+            event.width = (int) imageView.getImageWidth();
+            event.height = (int) imageView.getImageHeight();
+            span.end();
+        });
+        
+        MenuItem rotateLeftItem = new MenuItem("Rotate Left");
+        rotateLeftItem.setOnAction(e -> applyImageEdit(fileName, imageView, editMenu,
+                raster -> PixelPipeline.rotate(raster, -1)));
+        MenuItem rotateRightItem = new MenuItem("Rotate Right");
+        rotateRightItem.setOnAction(e -> applyImageEdit(fileName, imageView, editMenu,
+                raster -> PixelPipeline.rotate(raster, 1)));
+        MenuItem flipHorizontalItem = new MenuItem("Flip Horizontal");
+        flipHorizontalItem.setOnAction(e -> applyImageEdit(fileName, imageView, editMenu,
+                raster -> PixelPipeline.flip(raster, true)));
+        MenuItem flipVerticalItem = new MenuItem("Flip Vertical");
+        flipVerticalItem.setOnAction(e -> applyImageEdit(fileName, imageView, editMenu,
+                raster -> PixelPipeline.flip(raster, false)));
+        
+        MenuItem cropItem = new MenuItem("Crop to Selection");
+        cropItem.disableProperty().bind(imageView.selectionProperty().isNull());
+        cropItem.setOnAction(e -> {
+            Rectangle2D selected = imageView.selectionProperty().get();
+            int x = (int) Math.round(selected.getMinX());
+            int y = (int) Math.round(selected.getMinY());
+            int width = (int) Math.round(selected.getWidth());
+            int height = (int) Math.round(selected.getHeight());
+            applyImageEdit(fileName, imageView, editMenu, raster -> PixelPipeline.crop(raster, x, y, width, height));
+        });
+        
+        MenuItem adjustItem = new MenuItem("Brightness/Contrast...");
+        adjustItem.setOnAction(e -> {
+            Slider brightness = new Slider(-1, 1, 0);
+            Slider contrast = new Slider(-1, 1, 0);
+            if (showSliderDialog("Brightness/Contrast", new String[] {"Brightness:", "Contrast:"},
+                    brightness, contrast)) {
+                double b = brightness.getValue();
+                double c = contrast.getValue();
+                applyImageEdit(fileName, imageView, editMenu, raster -> PixelPipeline.adjust(raster, b, c));
+            }
+        });
+        
+        MenuItem blurItem = new MenuItem("Blur...");
+        blurItem.setOnAction(e -> {
+            Slider radius = new Slider(1, 20, 3);
+            radius.setShowTickLabels(true);
+            if (showSliderDialog("Blur", new String[] {"Radius:"}, radius)) {
+                int r = (int) Math.round(radius.getValue());
+                applyImageEdit(fileName, imageView, editMenu, raster -> PixelPipeline.blur(raster, r));
+            }
+        });
+        
+        MenuItem grayscaleItem = new MenuItem("Grayscale");
+        grayscaleItem.setOnAction(e -> applyImageEdit(fileName, imageView, editMenu, PixelPipeline::grayscale));
+        
+        editMenu.getItems().addAll(rotateLeftItem, rotateRightItem, flipHorizontalItem, flipVerticalItem,
+                new SeparatorMenuItem(), cropItem, new SeparatorMenuItem(), adjustItem, blurItem, grayscaleItem);
+        
+        // Zoom slider, 1 fits the image into 400x300 as before
+        Slider zoomSlider = new Slider(0.1, 3.0, 1.0);
+        zoomSlider.setShowTickLabels(true);
+        zoomSlider.setShowTickMarks(true);
+        
+        Runnable applyZoom = () -> {
+            double width = imageView.getImageWidth();
+            double height = imageView.getImageHeight();
+            if (width > 0 && height > 0) {
+                double fit = Math.min(400 / width, 300 / height);
+                imageView.setZoom(fit * zoomSlider.getValue());
+            }
+        };
+        zoomSlider.valueProperty().addListener((obs, oldVal, newVal) -> applyZoom.run());
+        // Crops and rotations change the size the zoom is relative to
+        imageView.setOnImageChanged(applyZoom);
+        applyZoom.run();
+        
+        VBox zoomBox = new VBox(5);
+        zoomBox.getChildren().addAll(new Label("Zoom:"), zoomSlider);
+        zoomBox.setPadding(new Insets(10));
+        
+        root.setTop(menuBar);
+        root.setCenter(imageView);
+        root.setBottom(zoomBox);
+        
+        // The pyramid keeps every level decoded, the tiles on screen only show part of it
+        WindowMonitor.setResources(photoStage, new WindowMonitor.Resources() {
+            @Override
+            public Collection<?> mediaOwners() {
+                return List.of(photoStage);
+            }
+            
+            @Override
+            public long extraImageBytes() {
+                return imageView.getPixelBytes();
+            }
+        });
+        
+        Scene scene = new Scene(root, 600, 500);
+        photoStage.setScene(scene);
+        photoStage.show();
+    }
+    
+    private void openTaskManagerApplication() {
+        if (taskManagerStage != null) {
+            taskManagerStage.toFront();
+            return;
+        }
+        UiEvents.OpenWindow event = new UiEvents.OpenWindow();
+        Metrics.Span span = metrics.start("window.taskManager", event);
+        event.application = "Task Manager";
+        Stage stage = new Stage();
+        stage.setTitle("Task Manager");
+        taskManagerStage = stage;
+        
+        // One row per open window, refreshed from a sample every second
+        TableView<WindowMonitor.Sample> table = new TableView<>();
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.getColumns().add(taskManagerColumn("Window", WindowMonitor.Sample::getTitle));
+        table.getColumns().add(taskManagerColumn("Nodes", WindowMonitor.Sample::getNodes));
+        table.getColumns().add(taskManagerColumn("Images (KB)", sample -> sample.getImageBytes() / 1024));
+        table.getColumns().add(taskManagerColumn("Players", WindowMonitor.Sample::getPlayers));
+        table.getColumns().add(taskManagerColumn("Timelines", WindowMonitor.Sample::getTimelines));
+        table.getColumns().add(taskManagerColumn("Pulse ms/s",
+                sample -> Math.round(sample.getPulseMillisPerSecond() * 10) / 10.0));
+        table.getColumns().add(taskManagerColumn("Max pulse ms",
+                sample -> Math.round(sample.getMaxPulseMillis() * 10) / 10.0));
+        
+        Label globalLabel = new Label();
+        
+        // The desktop itself cannot be closed from here, only logged out of or shut down
+        Button closeButton = new Button("Close Window");
+        closeButton.setDisable(true);
+        table.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) ->
+                closeButton.setDisable(newVal == null || newVal.getStage() == primaryStage));
+        closeButton.setOnAction(e -> {
+            WindowMonitor.Sample sample = table.getSelectionModel().getSelectedItem();
+            if (sample != null && sample.getStage() != primaryStage) {
+                sample.getStage().close();
+            }
+        });
+        
+        long[] lastGc = {0, 0};
+        Runnable refresh = () -> {
+            WindowMonitor.Sample selected = table.getSelectionModel().getSelectedItem();
+            table.getItems().setAll(windowMonitor.sample());
+            if (selected != null) {
+                for (WindowMonitor.Sample sample : table.getItems()) {
+                    if (sample.getStage() == selected.getStage()) {
+                        table.getSelectionModel().select(sample);
+                    }
+                }
+            }
+            
+            // Collector counters are plain reads of JVM counters, so this stays cheap
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcMillis += Math.max(0, gc.getCollectionTime());
+            }
+            globalLabel.setText(String.format(
+                    "Heap %d / %d MB (max %d MB)   GC %d collections, %d ms (+%d, +%d ms)   Players %d   Timelines %d",
+                    heap.getUsed() >> 20, heap.getCommitted() >> 20, heap.getMax() >> 20,
+                    gcCount, gcMillis, gcCount - lastGc[0], gcMillis - lastGc[1],
+                    mediaManager.getPlayerCount(), mediaManager.getTimelineCount()));
+            lastGc[0] = gcCount;
+            lastGc[1] = gcMillis;
+        };
+        Timeline refreshTimeline = new Timeline(new KeyFrame(TASK_MANAGER_REFRESH, e -> refresh.run()));
+        refreshTimeline.setCycleCount(Animation.INDEFINITE);
+        mediaManager.track(stage, refreshTimeline);
+        
+        HBox bottomBar = new HBox(10, globalLabel, closeButton);
+        bottomBar.setAlignment(Pos.CENTER_LEFT);
+        bottomBar.setPadding(new Insets(10));
+        HBox.setHgrow(globalLabel, Priority.ALWAYS);
+        globalLabel.setMaxWidth(Double.MAX_VALUE);
+        
+        BorderPane root = new BorderPane();
+        root.setCenter(table);
+        root.setBottom(bottomBar);
+        
+        Scene scene = new Scene(root, 760, 360);
+        stage.setScene(scene);
+        stage.setOnHidden(e -> {
+            mediaManager.release(stage);
+            taskManagerStage = null;
+        });
+        stage.show();
+        refresh.run();
+        refreshTimeline.play();
+        span.end();
+    }
+    
+    private static <T> TableColumn<WindowMonitor.Sample, T> taskManagerColumn(String title,
+            Function<WindowMonitor.Sample, T> value) {
+        TableColumn<WindowMonitor.Sample, T> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        return column;
+    }
+    
+    private void applyImageEdit(String fileName, TiledImageView imageView, Menu editMenu,
+            Function<PixelPipeline.Raster, PixelPipeline.Raster> operation) {
+        // Once the pyramid is ready the view only has its pixels, not the image
+        PixelPipeline.Raster pixels = imageView.getRaster();
+        Image image = imageView.getImage();
+        if (pixels == null && (image == null || image.getPixelReader() == null)) {
+            return;
+        }
+        
+        // The tiles are processed in the background, the window stays responsive meanwhile;
+        // closing it drops an edit that has not finished
+        editMenu.setDisable(true);
+        tasks.submit(imageView.getScene().getWindow(), TaskScheduler.Lane.COMPUTE, () -> {
+            PixelPipeline.Raster result = operation.apply(pixels != null ? pixels : PixelPipeline.read(image));
+            return Map.entry(result, PixelPipeline.toImage(result));
+        }, (edit, error) -> {
+            editMenu.setDisable(false);
+            if (error != null) {
+                showAlertLater("Error", "Could not edit " + fileName + ": " + error.getMessage());
+                return;
+            }
+            imageView.setImage(edit.getValue(), edit.getKey());
+            unsavedEdits.put(fileName, edit.getKey());
+            photoCache.put(EDITED_IMAGE_KEY + fileName, edit.getValue());
+            persistEditedImage(fileName, edit.getKey());
+        });
+    }
+    
+    private void persistEditedImage(String fileName, PixelPipeline.Raster raster) {
+        // Only the latest edit is encoded when several are queued
+        pendingImageWrites.put(fileName, raster);
+        tasks.execute(TaskScheduler.Lane.STORE, () -> {
+            PixelPipeline.Raster latest = pendingImageWrites.remove(fileName);
+            if (latest == null) {
+                return;
+            }
+            try {
+                byte[] data = PixelPipeline.encodePng(latest);
+                String previousKey = imageKey(fileName);
+                if (fileStore != null) {
+                    fileStore.write(fileName, FileStore.Kind.IMAGE, data);
+                } else {
+                    encodedImages.put(fileName, data);
+                }
+                String key = imageKey(fileName);
+                dropThumbnail(previousKey);
+                prepareThumbnail(fileName);
+                // The decoded edit now stands for the saved content, unless there is a newer edit
+                tasks.publish(() -> {
+                    if (unsavedEdits.remove(fileName, latest) && key != null) {
+                        photoCache.rekey(EDITED_IMAGE_KEY + fileName, key);
+                    }
+                    shortcutsGrid.refresh();
+                });
+            } catch (IOException e) {
+                showAlertLater("Error", "Could not save " + fileName + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    // Removes the thumbnail of content that no image has any more
+    private void dropThumbnail(String key) throws IOException {
+        if (key == null) {
+            return;
+        }
+        if (fileStore == null) {
+            // In memory the key is the name, so its content has just changed
+            encodedThumbnails.remove(key);
+            thumbnails.forget(key);
+        } else if (!fileStore.hasContent(key) && fileStore.contains(THUMBNAIL_PREFIX + key)) {
+            fileStore.delete(THUMBNAIL_PREFIX + key);
+            thumbnails.forget(key);
+        }
+    }
+    
+    private boolean showSliderDialog(String title, String[] labels, Slider... sliders) {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle(title);
+        
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(10));
+        for (int i = 0; i < sliders.length; i++) {
+            grid.add(new Label(labels[i]), 0, i);
+            grid.add(sliders[i], 1, i);
+        }
+        
+        dialog.getDialogPane().setContent(grid);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        return dialog.showAndWait().filter(button -> button == ButtonType.OK).isPresent();
+    }
+    
+    private void saveTextFile(CharSequence content, Stage parentStage) {
+        int textFileCount = fileNames.size(FileStore.Kind.TEXT);
+        String defaultName = "text" + (textFileCount > 0 ? textFileCount : "") + ".txt";
+        
+        TextInputDialog dialog = new TextInputDialog(defaultName);
+        dialog.setTitle("Save File");
+        dialog.setHeaderText("Enter file name:");
+        dialog.setContentText("File name:");
+        suggestExistingNames(dialog.getEditor(), FileStore.Kind.TEXT);
+        
+        Optional<String> result = dialog.showAndWait();
+        result.ifPresent(userInput -> {
+            // Timed from here, the dialogs would only measure the user
+            UiEvents.SaveTextFile event = new UiEvents.SaveTextFile();
+            Metrics.Span span = metrics.start("file.save", event);
+            event.length = content.length();
+            String fileName = userInput;
+            event.fileName = fileName;
+            
+            if (!isAlphanumeric(fileName.replace(".txt", ""))) {
+                span.end();
+                showAlert("Error", "File name must be alphanumeric!");
+                return;
+            }
+            
+            if (!fileName.endsWith(".txt")) {
+                fileName += ".txt";
+            }
+            event.fileName = fileName;
+            
+            if (!fileNames.add(fileName, FileStore.Kind.TEXT)) {
+                span.end();
+                showAlert("Error", "File name must be unique!");
+                return;
+            }
+            
+            // Create final variable for lambda access
+            final String finalFileName = fileName;
+            
+            storeTextFile(finalFileName, content);
+            
+            // Add shortcut to home page, laid out with the next pulse
+            DesktopShortcut textShortcut = createShortcut(loadIcon("notepad-icon.png"), finalFileName, () -> {
+                openTextFileApplication(finalFileName);
+            });
+            addShortcutToGrid(textShortcut);
+            event.saved = true;
+            span.end();
+            
+            showAlert("Success", "File saved: " + finalFileName);
+        });
+    }
+    
+    // Copies the text and image files of a host folder onto the desktop, without
+    // asking about any single file; names are made alphanumeric and unique
+    private void importFolder() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Import Folder");
+        File folder = chooser.showDialog(primaryStage);
+        if (folder == null) {
+            return;
+        }
+        
+        UiEvents.ImportFolder event = new UiEvents.ImportFolder();
+        Metrics.Span span = metrics.start("file.import", event);
+        event.folder = folder.getPath();
+        importFolderItem.setDisable(true);
+        importLabel.setText("Importing " + folder.getName());
+        importProgress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        importBar.setVisible(true);
+        
+        FolderImport folderImport = new FolderImport(fileNames, tasks.executor(TaskScheduler.Lane.COMPUTE),
+                this::storeImported);
+        tasks.submit(null, TaskScheduler.Lane.IO, () -> folderImport.run(folder.toPath(),
+                (done, total) -> tasks.publish(importProgress,
+                        () -> importProgress.setProgress(total == 0 ? 1 : (double) done / total))),
+                (result, error) -> {
+                    importFolderItem.setDisable(false);
+                    if (error != null) {
+                        span.end();
+                        importLabel.setText("Could not import " + folder.getName() + ": " + error.getMessage());
+                        hideImportBar();
+                        return;
+                    }
+                    
+                    // Everything is added to the desktop at once, in a single layout pass
+                    List<DesktopShortcut> shortcuts = new ArrayList<>();
+                    Image textIcon = loadIcon("notepad-icon.png");
+                    for (String fileName : result.getTexts()) {
+                        shortcuts.add(createShortcut(textIcon, fileName, () -> openTextFileApplication(fileName)));
+                    }
+                    for (String fileName : result.getImages()) {
+                        shortcuts.add(createImageShortcut(fileName, () -> openPhotoEditorApplication(fileName)));
+                    }
+                    shortcutsGrid.addAll(shortcuts);
+                    if (fileStore != null) {
+                        searchIndex.addAll(result.getTexts(), fileStore::readText);
+                    }
+                    
+                    event.textCount = result.getTexts().size();
+                    event.imageCount = result.getImages().size();
+                    event.failedCount = result.getFailed();
+                    span.end();
+                    importProgress.setProgress(1);
+                    importLabel.setText("Imported " + shortcuts.size() + " files from " + folder.getName()
+                            + (result.getFailed() > 0 ? ", " + result.getFailed() + " could not be read" : "")
+                            + (result.getSkipped() > 0 ? ", " + result.getSkipped() + " skipped" : ""));
+                    hideImportBar();
+                });
+    }
+    
+    // Called on the import thread with every batch of files that was read
+    private void storeImported(List<FileStore.Prepared> batch) throws IOException {
+        if (fileStore != null) {
+            fileStore.writeAll(batch);
+            return;
+        }
+        for (FileStore.Prepared file : batch) {
+            ByteBuffer data = file.getData();
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            if (file.getKind() == FileStore.Kind.TEXT) {
+                String text = new String(bytes, StandardCharsets.UTF_8);
+                textFiles.put(file.getName(), text);
+                searchIndex.update(file.getName(), text);
+            } else {
+                encodedImages.put(file.getName(), bytes);
+            }
+        }
+    }
+    
+    private void hideImportBar() {
+        PauseTransition pause = new PauseTransition(IMPORT_MESSAGE_DURATION);
+        pause.setOnFinished(e -> {
+            if (!importFolderItem.isDisable()) {
+                importBar.setVisible(false);
+            }
+        });
+        pause.play();
+    }
+    
+    private boolean isAlphanumeric(String str) {
+        return ALPHANUMERIC.matcher(str).matches();
+    }
+    
+    private void suggestExistingNames(TextField field, FileStore.Kind kind) {
+        // Lists the names already taken that start with what has been typed
+        ContextMenu suggestions = new ContextMenu();
+        field.textProperty().addListener((obs, oldVal, newVal) -> {
+            suggestions.getItems().clear();
+            if (newVal.isEmpty() || !field.isFocused()) {
+                suggestions.hide();
+                return;
+            }
+            for (String name : fileNames.withPrefix(newVal, kind, MAX_NAME_SUGGESTIONS)) {
+                MenuItem item = new MenuItem(name + " (exists)");
+                item.setOnAction(e -> {
+                    field.setText(name);
+                    field.positionCaret(name.length());
+                });
+                suggestions.getItems().add(item);
+            }
+            if (suggestions.getItems().isEmpty()) {
+                suggestions.hide();
+            } else if (!suggestions.isShowing()) {
+                suggestions.show(field, Side.BOTTOM, 0, 0);
+            }
+        });
+        field.focusedProperty().addListener((obs, oldVal, newVal) -> {
+            if (!newVal) {
+                suggestions.hide();
+            }
+        });
+    }
+    
+    private void showAlert(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+    
+    // For background results and published updates, from any thread: those run
+    // during a pulse, where a modal dialog cannot be shown
+    private void showAlertLater(String title, String message) {
+        Platform.runLater(() -> showAlert(title, message));
+    }
+    
+    private MediaPlayer acquireMedia(Object owner, String resource) {
+        URL url = getClass().getResource("/" + resource);
+        if (url == null) {
+            System.err.println("Missing media resource " + resource);
+            return null;
+        }
+        return mediaManager.acquire(owner, url.toExternalForm());
+    }
+    
+    private void cleanupMedia() {
+        mediaManager.releaseAll();
+    }
+    
+    public static void main(String[] args) {
+        launch(args);
+    }
+}
\ No newline at end of file
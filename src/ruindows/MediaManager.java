@@ -0,0 +1,278 @@
+package ruindows;
+
+import javafx.animation.Animation;
+import javafx.animation.Timeline;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaException;
+import javafx.scene.media.MediaPlayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Owns every media player and timeline the applications create.
+//
+// Players and timelines are registered against an owner, a window or a page,
+// and released with it. A released player is paused and kept for a while so
+// revisiting the same media reuses it instead of opening another decoder.
+// Only a fixed number of players exist at once, the least recently used one
+// is disposed to make room. An owner can also be paused while out of view and
+// resumed, which fails if one of its players was disposed meanwhile. A player
+// shared by several owners keeps playing until none of them is active. Only
+// used on the FX thread.
+public class MediaManager {
+
+    private final int maxPlayers;
+    private final int maxIdlePlayers;
+
+    // Players by media URL, least recently used first
+    private final LinkedHashMap<String, Entry> players = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Object, Owned> owners = new IdentityHashMap<>();
+
+    // Statistics
+    private long created = 0;
+    private long reused = 0;
+    private long disposed = 0;
+
+    private static class Entry {
+        final MediaPlayer player;
+        final Set<Object> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Owners out of view, always a subset of owners
+        final Set<Object> paused = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Entry(MediaPlayer player) {
+            this.player = player;
+        }
+
+        boolean isInUse() {
+            return owners.size() > paused.size();
+        }
+    }
+
+    private static class Owned {
+        final Set<String> urls = new HashSet<>();
+        final List<Timeline> timelines = new ArrayList<>();
+        final List<Runnable> cleanups = new ArrayList<>();
+        // What pause() stopped while it was running
+        final Set<String> pausedUrls = new HashSet<>();
+        final List<Timeline> pausedTimelines = new ArrayList<>();
+        // One of the owner's players was disposed to make room
+        boolean lostPlayer;
+    }
+
+    public MediaManager(int maxPlayers, int maxIdlePlayers) {
+        this.maxPlayers = maxPlayers;
+        this.maxIdlePlayers = maxIdlePlayers;
+    }
+
+    // Player for the URL, shared with anyone else showing the same media, or null if it cannot be opened
+    public MediaPlayer acquire(Object owner, String url) {
+        Entry entry = players.get(url);
+        if (entry == null) {
+            makeRoom();
+            MediaPlayer player;
+            try {
+                player = new MediaPlayer(new Media(url));
+            } catch (MediaException | IllegalArgumentException | UnsupportedOperationException e) {
+                System.err.println("Could not open " + url + ": " + e.getMessage());
+                return null;
+            }
+            player.setOnError(() -> System.err.println("Media error for " + url + ": " + player.getError()));
+            entry = new Entry(player);
+            players.put(url, entry);
+            created++;
+        } else {
+            reused++;
+        }
+        entry.owners.add(owner);
+        owned(owner).urls.add(url);
+        return entry.player;
+    }
+
+    // The timeline is stopped when its owner is released
+    public void track(Object owner, Timeline timeline) {
+        owned(owner).timelines.add(timeline);
+    }
+
+    // Runs when the owner is released, e.g. to remove listeners from a shared player
+    public void onRelease(Object owner, Runnable cleanup) {
+        owned(owner).cleanups.add(cleanup);
+    }
+
+    // Pauses the owner's players and timelines without giving them up, e.g. for
+    // a page out of view. A player another owner still shows keeps playing.
+    public void pause(Object owner) {
+        Owned owned = owners.get(owner);
+        if (owned == null) {
+            return;
+        }
+        for (Timeline timeline : owned.timelines) {
+            if (timeline.getStatus() == Animation.Status.RUNNING) {
+                owned.pausedTimelines.add(timeline);
+            }
+            timeline.pause();
+        }
+        for (String url : owned.urls) {
+            Entry entry = players.get(url);
+            if (entry != null && entry.paused.add(owner)) {
+                if (isPlaying(entry.player)) {
+                    owned.pausedUrls.add(url);
+                }
+                if (!entry.isInUse()) {
+                    entry.player.pause();
+                }
+            }
+        }
+    }
+
+    // Starts again what pause() stopped. False if one of the owner's players
+    // was disposed meanwhile, so what shows it has to be built again.
+    public boolean resume(Object owner) {
+        Owned owned = owners.get(owner);
+        if (owned == null) {
+            return true;
+        }
+        if (owned.lostPlayer) {
+            return false;
+        }
+        for (String url : owned.urls) {
+            // Looking it up makes it recently used again
+            Entry entry = players.get(url);
+            if (entry != null && entry.paused.remove(owner) && owned.pausedUrls.contains(url)) {
+                entry.player.play();
+            }
+        }
+        for (Timeline timeline : owned.pausedTimelines) {
+            timeline.play();
+        }
+        owned.pausedUrls.clear();
+        owned.pausedTimelines.clear();
+        return true;
+    }
+
+    // Playing, or about to start on its own once it is ready
+    private static boolean isPlaying(MediaPlayer player) {
+        MediaPlayer.Status status = player.getStatus();
+        return status == MediaPlayer.Status.PLAYING || status == MediaPlayer.Status.STALLED
+                || (status == MediaPlayer.Status.UNKNOWN && player.isAutoPlay());
+    }
+
+    public void release(Object owner) {
+        Owned owned = owners.remove(owner);
+        if (owned == null) {
+            return;
+        }
+        for (Runnable cleanup : owned.cleanups) {
+            cleanup.run();
+        }
+        for (Timeline timeline : owned.timelines) {
+            timeline.stop();
+        }
+        for (String url : owned.urls) {
+            Entry entry = players.get(url);
+            if (entry != null && entry.owners.remove(owner)) {
+                entry.paused.remove(owner);
+                if (!entry.isInUse()) {
+                    entry.player.pause();
+                }
+            }
+        }
+        trimIdle();
+    }
+
+    // Disposes everything, used on logout and shutdown
+    public void releaseAll() {
+        for (Object owner : new ArrayList<>(owners.keySet())) {
+            release(owner);
+        }
+        for (Entry entry : players.values()) {
+            entry.player.dispose();
+            disposed++;
+        }
+        players.clear();
+    }
+
+    private Owned owned(Object owner) {
+        return owners.computeIfAbsent(owner, k -> new Owned());
+    }
+
+    private void makeRoom() {
+        // Idle players go first, then the least recently used one in use
+        while (players.size() >= maxPlayers) {
+            if (!evict(true) && !evict(false)) {
+                break;
+            }
+        }
+    }
+
+    private void trimIdle() {
+        int idle = 0;
+        for (Entry entry : players.values()) {
+            if (entry.owners.isEmpty()) {
+                idle++;
+            }
+        }
+        while (idle > maxIdlePlayers && evict(true)) {
+            idle--;
+        }
+    }
+
+    private boolean evict(boolean idleOnly) {
+        Iterator<Map.Entry<String, Entry>> it = players.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> oldest = it.next();
+            Entry entry = oldest.getValue();
+            if (idleOnly && !entry.owners.isEmpty()) {
+                continue;
+            }
+            it.remove();
+            for (Object owner : entry.owners) {
+                Owned owned = owners.get(owner);
+                if (owned != null) {
+                    owned.urls.remove(oldest.getKey());
+                    owned.lostPlayer = true;
+                }
+            }
+            entry.player.dispose();
+            disposed++;
+            return true;
+        }
+        return false;
+    }
+
+    // Players currently holding a decoder, in use or idle
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    public int getPlayerCount(Object owner) {
+        Owned owned = owners.get(owner);
+        return owned == null ? 0 : owned.urls.size();
+    }
+
+    public int getTimelineCount() {
+        int count = 0;
+        for (Owned owned : owners.values()) {
+            count += owned.timelines.size();
+        }
+        return count;
+    }
+
+    public int getTimelineCount(Object owner) {
+        Owned owned = owners.get(owner);
+        return owned == null ? 0 : owned.timelines.size();
+    }
+
+    @Override
+    public String toString() {
+        return "MediaManager[players=" + players.size() + "/" + maxPlayers + ", owners=" + owners.size()
+                + ", timelines=" + getTimelineCount() + ", created=" + created + ", reused=" + reused
+                + ", disposed=" + disposed + "]";
+    }
+}
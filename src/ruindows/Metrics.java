@@ -0,0 +1,169 @@
+package ruindows;
+
+import jdk.jfr.Event;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Latency histograms of user-facing operations, kept in process and written
+// to a file on request.
+//
+// Each histogram splits every power of two into eight buckets, so a recorded
+// duration costs a few atomic increments and percentiles are within 12.5%.
+// Safe to use from any thread.
+public class Metrics {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucket(value));
+            count.incrementAndGet();
+            total.addAndGet(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        public double getMeanNanos() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) total.get() / n;
+        }
+
+        // Upper bound of the bucket holding the p-th percentile, 0 when empty
+        public long percentileNanos(double p) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        private void writeJson(StringBuilder out) {
+            out.append("{\"count\": ").append(getCount())
+                    .append(", \"mean_ms\": ").append(millis(getMeanNanos()))
+                    .append(", \"p50_ms\": ").append(millis(percentileNanos(50)))
+                    .append(", \"p90_ms\": ").append(millis(percentileNanos(90)))
+                    .append(", \"p99_ms\": ").append(millis(percentileNanos(99)))
+                    .append(", \"max_ms\": ").append(millis(getMaxNanos()))
+                    .append(", \"buckets\": [");
+            // Only the non-empty buckets, as [upper bound in ns, count]
+            boolean first = true;
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = buckets.get(i);
+                if (n != 0) {
+                    out.append(first ? "" : ", ").append('[').append(upperBound(i)).append(", ").append(n).append(']');
+                    first = false;
+                }
+            }
+            out.append("]}");
+        }
+    }
+
+    // Times one operation into a histogram and a Flight Recorder event
+    public static class Span {
+        private final Histogram histogram;
+        private final Event event;
+        private final long start = System.nanoTime();
+
+        private Span(Histogram histogram, Event event) {
+            this.histogram = histogram;
+            this.event = event;
+            event.begin();
+        }
+
+        // Call once, after the event's fields are set
+        public void end() {
+            histogram.record(System.nanoTime() - start);
+            event.commit();
+        }
+    }
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public void record(String name, long nanos) {
+        histogram(name).record(nanos);
+    }
+
+    public Span start(String name, Event event) {
+        return new Span(histogram(name), event);
+    }
+
+    // Writes every histogram as JSON, replacing the file only once it is complete
+    public void dump(Path file) throws IOException {
+        StringBuilder out = new StringBuilder("{\n");
+        boolean first = true;
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(histograms).entrySet()) {
+            out.append(first ? "" : ",\n").append("  \"").append(e.getKey()).append("\": ");
+            e.getValue().writeJson(out);
+            first = false;
+        }
+        out.append("\n}\n");
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, out.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Values below sixteen have a bucket each, above that there are eight per power of two
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        long bound = ((mantissa + 1) << shift) - 1;
+        return bound < 0 ? Long.MAX_VALUE : bound;
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+}
@@ -0,0 +1,62 @@
+package ruindows;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Built ChRUme pages of every tab in every window, least recently shown first.
+//
+// All pages count against one limit, so the pages kept, with their images
+// and players, do not grow with the number of tabs and windows. A page on
+// screen is never evicted; any other page, including the one a tab in the
+// background shows, is released once the limit is exceeded and built again
+// when it is needed. Only used on the FX thread.
+public class PageCache {
+
+    private final int maxPages;
+    private final BrowserTab.PageHandler release;
+    private final LinkedHashMap<BrowserTab.Page, BrowserTab> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    public PageCache(int maxPages, BrowserTab.PageHandler release) {
+        this.maxPages = maxPages;
+        this.release = release;
+    }
+
+    void add(BrowserTab tab, BrowserTab.Page page) {
+        pages.put(page, tab);
+        trim();
+    }
+
+    // Marks the page as shown just now
+    void touch(BrowserTab.Page page) {
+        pages.get(page);
+    }
+
+    void remove(BrowserTab.Page page) {
+        if (pages.remove(page) != null) {
+            release.handle(page);
+        }
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<BrowserTab.Page, BrowserTab>> it = pages.entrySet().iterator();
+        while (pages.size() > maxPages && it.hasNext()) {
+            Map.Entry<BrowserTab.Page, BrowserTab> oldest = it.next();
+            BrowserTab tab = oldest.getValue();
+            if (tab.isShowing(oldest.getKey())) {
+                continue;
+            }
+            it.remove();
+            tab.evicted(oldest.getKey());
+            release.handle(oldest.getKey());
+        }
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+}
@@ -0,0 +1,367 @@
+package ruindows;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Pixel operations for the photo editor.
+//
+// An image is copied once into an int[] of ARGB pixels. Every operation then
+// writes a new buffer tile by tile, with the tiles spread over the fork/join
+// pool, so a large photo keeps every core busy. Call these off the FX thread.
+public final class PixelPipeline {
+
+    private static final int TILE = 256;
+
+    private PixelPipeline() {
+    }
+
+    // Non-premultiplied ARGB pixels, row by row
+    public static final class Raster {
+        private final int width;
+        private final int height;
+        private final int[] pixels;
+
+        public Raster(int width, int height, int[] pixels) {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+
+        public Raster(int width, int height) {
+            this(width, height, new int[width * height]);
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int[] getPixels() {
+            return pixels;
+        }
+    }
+
+    private interface TileTask {
+        void run(int x0, int y0, int x1, int y1);
+    }
+
+    public static Raster read(Image image) {
+        PixelReader reader = image.getPixelReader();
+        if (reader == null) {
+            throw new IllegalArgumentException("Image is not loaded");
+        }
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        Raster raster = new Raster(width, height);
+        reader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), raster.pixels, 0, width);
+        return raster;
+    }
+
+    public static WritableImage toImage(Raster raster) {
+        WritableImage image = new WritableImage(raster.width, raster.height);
+        image.getPixelWriter().setPixels(0, 0, raster.width, raster.height, PixelFormat.getIntArgbInstance(),
+                raster.pixels, 0, raster.width);
+        return image;
+    }
+
+    public static byte[] encodePng(Raster raster) throws IOException {
+        BufferedImage image = new BufferedImage(raster.width, raster.height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, raster.width, raster.height, raster.pixels, 0, raster.width);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    // Rotates clockwise by the given number of quarter turns, negative turns go counterclockwise
+    public static Raster rotate(Raster source, int quarterTurns) {
+        int turns = ((quarterTurns % 4) + 4) % 4;
+        int w = source.width;
+        int h = source.height;
+        int[] src = source.pixels;
+        if (turns == 0) {
+            return source;
+        }
+        Raster target = turns == 2 ? new Raster(w, h) : new Raster(h, w);
+        int[] dst = target.pixels;
+        int stride = target.width;
+        forEachTile(target.width, target.height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int row = y * stride;
+                for (int x = x0; x < x1; x++) {
+                    int sx;
+                    int sy;
+                    if (turns == 1) {
+                        sx = y;
+                        sy = h - 1 - x;
+                    } else if (turns == 2) {
+                        sx = w - 1 - x;
+                        sy = h - 1 - y;
+                    } else {
+                        sx = w - 1 - y;
+                        sy = x;
+                    }
+                    dst[row + x] = src[sy * w + sx];
+                }
+            }
+        });
+        return target;
+    }
+
+    public static Raster flip(Raster source, boolean horizontal) {
+        int w = source.width;
+        int h = source.height;
+        int[] src = source.pixels;
+        Raster target = new Raster(w, h);
+        int[] dst = target.pixels;
+        forEachTile(w, h, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int sy = horizontal ? y : h - 1 - y;
+                for (int x = x0; x < x1; x++) {
+                    int sx = horizontal ? w - 1 - x : x;
+                    dst[y * w + x] = src[sy * w + sx];
+                }
+            }
+        });
+        return target;
+    }
+
+    // The rectangle is clipped to the image, an empty result returns the source
+    public static Raster crop(Raster source, int x, int y, int width, int height) {
+        int left = Math.max(0, x);
+        int top = Math.max(0, y);
+        int right = Math.min(source.width, x + width);
+        int bottom = Math.min(source.height, y + height);
+        if (right <= left || bottom <= top) {
+            return source;
+        }
+        int[] src = source.pixels;
+        Raster target = new Raster(right - left, bottom - top);
+        int[] dst = target.pixels;
+        forEachTile(target.width, target.height, (x0, y0, x1, y1) -> {
+            for (int row = y0; row < y1; row++) {
+                System.arraycopy(src, (row + top) * source.width + left + x0, dst, row * target.width + x0, x1 - x0);
+            }
+        });
+        return target;
+    }
+
+    // Brightness and contrast both range from -1 to 1, 0 leaves the image unchanged
+    public static Raster adjust(Raster source, double brightness, double contrast) {
+        double c = Math.max(-1, Math.min(0.99, contrast));
+        double factor = (1 + c) / (1 - c);
+        double offset = brightness * 255;
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = clamp((int) Math.round((v - 128) * factor + 128 + offset));
+        }
+        return mapPixels(source, argb -> (argb & 0xFF000000)
+                | table[(argb >> 16) & 0xFF] << 16
+                | table[(argb >> 8) & 0xFF] << 8
+                | table[argb & 0xFF]);
+    }
+
+    public static Raster grayscale(Raster source) {
+        return mapPixels(source, argb -> {
+            int luma = (((argb >> 16) & 0xFF) * 77 + ((argb >> 8) & 0xFF) * 150 + (argb & 0xFF) * 29) >> 8;
+            return (argb & 0xFF000000) | luma << 16 | luma << 8 | luma;
+        });
+    }
+
+    // Half the size in each direction, every pixel the average of a 2x2 block
+    public static Raster halve(Raster source) {
+        int w = source.width;
+        int h = source.height;
+        int[] src = source.pixels;
+        Raster target = new Raster((w + 1) / 2, (h + 1) / 2);
+        int[] dst = target.pixels;
+        int stride = target.width;
+        forEachTile(target.width, target.height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int top = 2 * y * w;
+                int bottom = Math.min(2 * y + 1, h - 1) * w;
+                for (int x = x0; x < x1; x++) {
+                    int left = 2 * x;
+                    int right = Math.min(2 * x + 1, w - 1);
+                    int p0 = src[top + left];
+                    int p1 = src[top + right];
+                    int p2 = src[bottom + left];
+                    int p3 = src[bottom + right];
+                    int a = ((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2;
+                    int r = (((p0 >> 16) & 0xFF) + ((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF) + 2) >> 2;
+                    int g = (((p0 >> 8) & 0xFF) + ((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF) + 2) >> 2;
+                    int b = ((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2;
+                    dst[y * stride + x] = a << 24 | r << 16 | g << 8 | b;
+                }
+            }
+        });
+        return target;
+    }
+
+    // Three rounds of separable box blur, close to a Gaussian with the given radius
+    public static Raster blur(Raster source, int radius) {
+        if (radius <= 0) {
+            return source;
+        }
+        // Window sums are divided through a table, which is a lot cheaper than four divisions per pixel
+        int window = 2 * radius + 1;
+        int[] divide = new int[256 * window];
+        for (int i = 0; i < divide.length; i++) {
+            divide[i] = i / window;
+        }
+        Raster result = source;
+        for (int pass = 0; pass < 3; pass++) {
+            result = blurVertical(blurHorizontal(result, radius, divide), radius, divide);
+        }
+        return result;
+    }
+
+    private static Raster blurHorizontal(Raster source, int radius, int[] divide) {
+        int w = source.width;
+        int[] src = source.pixels;
+        Raster target = new Raster(w, source.height);
+        int[] dst = target.pixels;
+        forEachTile(w, source.height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int row = y * w;
+                int a = 0;
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (int i = x0 - radius; i <= x0 + radius; i++) {
+                    int p = src[row + Math.max(0, Math.min(w - 1, i))];
+                    a += p >>> 24;
+                    r += (p >> 16) & 0xFF;
+                    g += (p >> 8) & 0xFF;
+                    b += p & 0xFF;
+                }
+                for (int x = x0; x < x1; x++) {
+                    dst[row + x] = divide[a] << 24 | divide[r] << 16 | divide[g] << 8 | divide[b];
+                    int out = src[row + Math.max(0, x - radius)];
+                    int in = src[row + Math.min(w - 1, x + radius + 1)];
+                    a += (in >>> 24) - (out >>> 24);
+                    r += ((in >> 16) & 0xFF) - ((out >> 16) & 0xFF);
+                    g += ((in >> 8) & 0xFF) - ((out >> 8) & 0xFF);
+                    b += (in & 0xFF) - (out & 0xFF);
+                }
+            }
+        });
+        return target;
+    }
+
+    private static Raster blurVertical(Raster source, int radius, int[] divide) {
+        int w = source.width;
+        int h = source.height;
+        int[] src = source.pixels;
+        Raster target = new Raster(w, h);
+        int[] dst = target.pixels;
+        forEachTile(w, h, (x0, y0, x1, y1) -> {
+            // Running sums for each column of the tile, walked row by row to stay cache friendly
+            int span = x1 - x0;
+            int[] sums = new int[span * 4];
+            for (int i = y0 - radius; i <= y0 + radius; i++) {
+                int row = Math.max(0, Math.min(h - 1, i)) * w;
+                for (int x = 0; x < span; x++) {
+                    int p = src[row + x0 + x];
+                    sums[x * 4] += p >>> 24;
+                    sums[x * 4 + 1] += (p >> 16) & 0xFF;
+                    sums[x * 4 + 2] += (p >> 8) & 0xFF;
+                    sums[x * 4 + 3] += p & 0xFF;
+                }
+            }
+            for (int y = y0; y < y1; y++) {
+                int row = y * w;
+                int outRow = Math.max(0, y - radius) * w;
+                int inRow = Math.min(h - 1, y + radius + 1) * w;
+                for (int x = 0; x < span; x++) {
+                    int s = x * 4;
+                    dst[row + x0 + x] = divide[sums[s]] << 24 | divide[sums[s + 1]] << 16
+                            | divide[sums[s + 2]] << 8 | divide[sums[s + 3]];
+                    int out = src[outRow + x0 + x];
+                    int in = src[inRow + x0 + x];
+                    sums[s] += (in >>> 24) - (out >>> 24);
+                    sums[s + 1] += ((in >> 16) & 0xFF) - ((out >> 16) & 0xFF);
+                    sums[s + 2] += ((in >> 8) & 0xFF) - ((out >> 8) & 0xFF);
+                    sums[s + 3] += (in & 0xFF) - (out & 0xFF);
+                }
+            }
+        });
+        return target;
+    }
+
+    private interface PixelMap {
+        int apply(int argb);
+    }
+
+    private static Raster mapPixels(Raster source, PixelMap map) {
+        int w = source.width;
+        int[] src = source.pixels;
+        Raster target = new Raster(w, source.height);
+        int[] dst = target.pixels;
+        forEachTile(w, source.height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                for (int i = y * w + x0, end = y * w + x1; i < end; i++) {
+                    dst[i] = map.apply(src[i]);
+                }
+            }
+        });
+        return target;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    private static void forEachTile(int width, int height, TileTask task) {
+        int columns = (width + TILE - 1) / TILE;
+        int rows = (height + TILE - 1) / TILE;
+        if (columns * rows > 0) {
+            ForkJoinPool.commonPool().invoke(new Tiles(task, width, height, columns, 0, columns * rows));
+        }
+    }
+
+    // Splits a range of tile indices in half until a single tile is left
+    private static class Tiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TileTask task;
+        private final int width;
+        private final int height;
+        private final int columns;
+        private final int start;
+        private final int end;
+
+        Tiles(TileTask task, int width, int height, int columns, int start, int end) {
+            this.task = task;
+            this.width = width;
+            this.height = height;
+            this.columns = columns;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                int x0 = (start % columns) * TILE;
+                int y0 = (start / columns) * TILE;
+                task.run(x0, y0, Math.min(width, x0 + TILE), Math.min(height, y0 + TILE));
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new Tiles(task, width, height, columns, start, middle),
+                    new Tiles(task, width, height, columns, middle, end));
+        }
+    }
+}
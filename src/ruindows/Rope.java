@@ -0,0 +1,356 @@
+package ruindows;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+// Immutable text stored as a height-balanced tree of short chunks.
+//
+// Inserting or deleting builds a new rope that shares every untouched chunk
+// with the old one, in O(log n). Holding on to a rope is therefore a cheap
+// snapshot of the document. Each node also counts its line breaks so that
+// line lookups are O(log n) as well.
+public final class Rope implements CharSequence {
+
+    private static final int MAX_LEAF = 2048;
+    private static final int STRING_CHUNK = 64 * 1024;
+
+    public static final Rope EMPTY = new Rope("");
+
+    private final Rope left;
+    private final Rope right;
+    private final String leaf;
+    private final int length;
+    private final int newlines;
+    private final int height;
+
+    private Rope(String leaf) {
+        this.left = null;
+        this.right = null;
+        this.leaf = leaf;
+        this.length = leaf.length();
+        this.newlines = countNewlines(leaf);
+        this.height = 0;
+    }
+
+    private Rope(Rope left, Rope right) {
+        this.left = left;
+        this.right = right;
+        this.leaf = null;
+        this.length = left.length + right.length;
+        this.newlines = left.newlines + right.newlines;
+        this.height = Math.max(left.height, right.height) + 1;
+    }
+
+    public static Rope of(CharSequence text) {
+        if (text instanceof Rope) {
+            return (Rope) text;
+        }
+        if (text.length() == 0) {
+            return EMPTY;
+        }
+        return build(text.toString(), 0, text.length());
+    }
+
+    private static Rope build(String text, int start, int end) {
+        if (end - start <= MAX_LEAF) {
+            return new Rope(text.substring(start, end));
+        }
+        int middle = (start + end) >>> 1;
+        // Never split a surrogate pair between two leaves
+        if (Character.isHighSurrogate(text.charAt(middle - 1))) {
+            middle++;
+        }
+        return new Rope(build(text, start, middle), build(text, middle, end));
+    }
+
+    private boolean isLeaf() {
+        return leaf != null;
+    }
+
+    // Depth of the tree, 0 for a single chunk
+    int height() {
+        return height;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        Rope node = this;
+        while (!node.isLeaf()) {
+            if (index < node.left.length) {
+                node = node.left;
+            } else {
+                index -= node.left.length;
+                node = node.right;
+            }
+        }
+        return node.leaf.charAt(index);
+    }
+
+    @Override
+    public Rope subSequence(int start, int end) {
+        checkRange(start, end);
+        if (start == 0 && end == length) {
+            return this;
+        }
+        if (start == end) {
+            return EMPTY;
+        }
+        if (isLeaf()) {
+            return new Rope(leaf.substring(start, end));
+        }
+        int split = left.length;
+        if (end <= split) {
+            return left.subSequence(start, end);
+        }
+        if (start >= split) {
+            return right.subSequence(start - split, end - split);
+        }
+        return join(left.subSequence(start, split), right.subSequence(0, end - split));
+    }
+
+    public Rope insert(int index, CharSequence text) {
+        checkRange(index, index);
+        if (text.length() == 0) {
+            return this;
+        }
+        return join(join(subSequence(0, index), of(text)), subSequence(index, length));
+    }
+
+    public Rope delete(int start, int end) {
+        checkRange(start, end);
+        if (start == end) {
+            return this;
+        }
+        return join(subSequence(0, start), subSequence(end, length));
+    }
+
+    public Rope replace(int start, int end, CharSequence text) {
+        return delete(start, end).insert(start, text);
+    }
+
+    public Rope append(CharSequence text) {
+        return join(this, of(text));
+    }
+
+    // Number of lines, a document without line breaks has one
+    public int lineCount() {
+        return newlines + 1;
+    }
+
+    // Offset of the first character of the given line
+    public int lineStart(int line) {
+        if (line <= 0) {
+            return 0;
+        }
+        if (line > newlines) {
+            return length;
+        }
+        // Find the offset just after the line-th line break
+        Rope node = this;
+        int offset = 0;
+        int remaining = line;
+        while (!node.isLeaf()) {
+            if (remaining <= node.left.newlines) {
+                node = node.left;
+            } else {
+                remaining -= node.left.newlines;
+                offset += node.left.length;
+                node = node.right;
+            }
+        }
+        int index = -1;
+        for (int i = 0; i < remaining; i++) {
+            index = node.leaf.indexOf('\n', index + 1);
+        }
+        return offset + index + 1;
+    }
+
+    // Offset of the line break ending the given line, or the document length
+    public int lineEnd(int line) {
+        if (line >= newlines) {
+            return length;
+        }
+        return lineStart(line + 1) - 1;
+    }
+
+    // Line containing the given offset
+    public int lineOf(int offset) {
+        if (offset <= 0) {
+            return 0;
+        }
+        offset = Math.min(offset, length);
+        Rope node = this;
+        int line = 0;
+        while (!node.isLeaf()) {
+            if (offset <= node.left.length) {
+                node = node.left;
+            } else {
+                offset -= node.left.length;
+                line += node.left.newlines;
+                node = node.right;
+            }
+        }
+        for (int i = 0; i < offset; i++) {
+            if (node.leaf.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    // Visits the chunks in order without building one large String
+    public void forEachChunk(Consumer<String> consumer) {
+        if (isLeaf()) {
+            if (!leaf.isEmpty()) {
+                consumer.accept(leaf);
+            }
+            return;
+        }
+        left.forEachChunk(consumer);
+        right.forEachChunk(consumer);
+    }
+
+    // Chunks of any text, the leaves for a rope and slices of a String otherwise
+    public static Iterable<String> chunks(CharSequence text) {
+        if (text instanceof Rope) {
+            return () -> new LeafIterator((Rope) text);
+        }
+        String string = text.toString();
+        return () -> new Iterator<String>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < string.length();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int end = Math.min(string.length(), position + STRING_CHUNK);
+                if (end < string.length() && Character.isHighSurrogate(string.charAt(end - 1))) {
+                    end++;
+                }
+                String chunk = string.substring(position, end);
+                position = end;
+                return chunk;
+            }
+        };
+    }
+
+    private static class LeafIterator implements Iterator<String> {
+        private final Deque<Rope> stack = new ArrayDeque<>();
+        private Rope next;
+
+        LeafIterator(Rope root) {
+            stack.push(root);
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (!stack.isEmpty()) {
+                Rope node = stack.pop();
+                if (node.isLeaf()) {
+                    if (!node.leaf.isEmpty()) {
+                        next = node;
+                        return;
+                    }
+                } else {
+                    stack.push(node.right);
+                    stack.push(node.left);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            String leaf = next.leaf;
+            advance();
+            return leaf;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (isLeaf()) {
+            return leaf;
+        }
+        StringBuilder builder = new StringBuilder(length);
+        forEachChunk(builder::append);
+        return builder.toString();
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + length);
+        }
+    }
+
+    // AVL-style join, every rope on the left comes before every rope on the right
+    private static Rope join(Rope left, Rope right) {
+        if (left.length == 0) {
+            return right;
+        }
+        if (right.length == 0) {
+            return left;
+        }
+        if (left.isLeaf() && right.isLeaf() && left.length + right.length <= MAX_LEAF) {
+            return new Rope(left.leaf + right.leaf);
+        }
+        if (left.height > right.height + 1) {
+            return balance(left.left, join(left.right, right));
+        }
+        if (right.height > left.height + 1) {
+            return balance(join(left, right.left), right.right);
+        }
+        return new Rope(left, right);
+    }
+
+    private static Rope balance(Rope left, Rope right) {
+        if (left.height > right.height + 1) {
+            if (left.left.height >= left.right.height) {
+                return new Rope(left.left, new Rope(left.right, right));
+            }
+            return new Rope(new Rope(left.left, left.right.left), new Rope(left.right.right, right));
+        }
+        if (right.height > left.height + 1) {
+            if (right.right.height >= right.left.height) {
+                return new Rope(new Rope(left, right.left), right.right);
+            }
+            return new Rope(new Rope(left, right.left.left), new Rope(right.left.right, right.right));
+        }
+        return new Rope(left, right);
+    }
+
+    private static int countNewlines(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,501 @@
+package ruindows;
+
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Plain text editor backed by a Rope.
+//
+// Only the lines inside the viewport get a Text node, and only the visible
+// part of each line is turned into a String, so a document of any size costs
+// the same to render. Edits are O(log n) and getDocument() is a snapshot that
+// shares its chunks with the editor instead of copying them.
+public class RopeEditor extends Region {
+
+    public interface EditListener {
+        void edited(int start, int removedLength, CharSequence inserted);
+    }
+
+    private static final Font FONT = Font.font("Monospaced", 13);
+    private static final double PADDING = 4;
+    private static final int MAX_UNDO = 500;
+    private static final long TYPING_GROUP_MILLIS = 1000;
+
+    private final double charWidth;
+    private final double lineHeight;
+
+    private Rope document = Rope.EMPTY;
+    private int caret = 0;
+    private int anchor = 0;
+    private int widestLine = 0;
+
+    private final Pane textLayer = new Pane();
+    private final Rectangle clip = new Rectangle();
+    private final List<Text> lineNodes = new ArrayList<>();
+    private final List<Rectangle> selectionNodes = new ArrayList<>();
+    private final Rectangle caretShape = new Rectangle(1, 0, Color.BLACK);
+    private final ScrollBar vbar = new ScrollBar();
+    private final ScrollBar hbar = new ScrollBar();
+    private final List<EditListener> listeners = new ArrayList<>();
+
+    // Undo history, each entry restores the text an edit replaced
+    private final Deque<Edit> undoStack = new ArrayDeque<>();
+    private final Deque<Edit> redoStack = new ArrayDeque<>();
+    private long lastTypedAt = 0;
+
+    private static class Edit {
+        final int start;
+        final CharSequence removed;
+        CharSequence inserted;
+
+        Edit(int start, CharSequence removed, CharSequence inserted) {
+            this.start = start;
+            this.removed = removed;
+            this.inserted = inserted;
+        }
+    }
+
+    public RopeEditor() {
+        Text probe = new Text("M");
+        probe.setFont(FONT);
+        charWidth = probe.getLayoutBounds().getWidth();
+        lineHeight = Math.ceil(probe.getLayoutBounds().getHeight());
+
+        setStyle("-fx-background-color: white;");
+        setFocusTraversable(true);
+        setMinSize(0, 0);
+
+        textLayer.setManaged(false);
+        textLayer.setClip(clip);
+        caretShape.setHeight(lineHeight);
+        caretShape.setManaged(false);
+        vbar.setOrientation(Orientation.VERTICAL);
+        hbar.setOrientation(Orientation.HORIZONTAL);
+        vbar.valueProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+        hbar.valueProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+        focusedProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+
+        getChildren().addAll(textLayer, vbar, hbar);
+
+        addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+            requestFocus();
+            moveCaret(offsetAt(e.getX(), e.getY()), e.isShiftDown());
+        });
+        addEventHandler(MouseEvent.MOUSE_DRAGGED, e -> moveCaret(offsetAt(e.getX(), e.getY()), true));
+        setOnScroll(e -> {
+            if (e.getDeltaY() != 0) {
+                vbar.setValue(clamp(vbar.getValue() - e.getDeltaY(), 0, vbar.getMax()));
+            }
+            if (e.getDeltaX() != 0) {
+                hbar.setValue(clamp(hbar.getValue() - e.getDeltaX(), 0, hbar.getMax()));
+            }
+            e.consume();
+        });
+        addEventHandler(KeyEvent.KEY_PRESSED, this::keyPressed);
+        addEventHandler(KeyEvent.KEY_TYPED, this::keyTyped);
+    }
+
+    public void setDocument(CharSequence text) {
+        document = Rope.of(text);
+        caret = 0;
+        anchor = 0;
+        widestLine = 0;
+        undoStack.clear();
+        redoStack.clear();
+        vbar.setValue(0);
+        hbar.setValue(0);
+        requestLayout();
+    }
+
+    // Immutable snapshot of the current text
+    public Rope getDocument() {
+        return document;
+    }
+
+    public void addEditListener(EditListener listener) {
+        listeners.add(listener);
+    }
+
+    public void replace(int start, int end, CharSequence text) {
+        replace(start, end, text, true);
+    }
+
+    private void replace(int start, int end, CharSequence text, boolean recordUndo) {
+        Rope removed = document.subSequence(start, end);
+        document = document.replace(start, end, text);
+        caret = start + text.length();
+        anchor = caret;
+
+        if (recordUndo) {
+            redoStack.clear();
+            long now = System.currentTimeMillis();
+            Edit last = undoStack.peek();
+            boolean typing = text.length() == 1 && removed.length() == 0 && text.charAt(0) != '\n';
+            if (typing && last != null && last.removed.length() == 0
+                    && last.start + last.inserted.length() == start && now - lastTypedAt < TYPING_GROUP_MILLIS) {
+                // Consecutive typing is undone as one step
+                last.inserted = Rope.of(last.inserted).append(text);
+            } else {
+                undoStack.push(new Edit(start, removed, text));
+                if (undoStack.size() > MAX_UNDO) {
+                    undoStack.removeLast();
+                }
+            }
+            lastTypedAt = typing ? now : 0;
+        }
+
+        for (EditListener listener : listeners) {
+            listener.edited(start, end - start, text);
+        }
+        ensureCaretVisible();
+        requestLayout();
+    }
+
+    public void undo() {
+        Edit edit = undoStack.poll();
+        if (edit != null) {
+            replace(edit.start, edit.start + edit.inserted.length(), edit.removed, false);
+            redoStack.push(edit);
+            lastTypedAt = 0;
+        }
+    }
+
+    public void redo() {
+        Edit edit = redoStack.poll();
+        if (edit != null) {
+            replace(edit.start, edit.start + edit.removed.length(), edit.inserted, false);
+            undoStack.push(edit);
+        }
+    }
+
+    private int selectionStart() {
+        return Math.min(caret, anchor);
+    }
+
+    private int selectionEnd() {
+        return Math.max(caret, anchor);
+    }
+
+    private void replaceSelection(CharSequence text) {
+        replace(selectionStart(), selectionEnd(), text);
+    }
+
+    private void moveCaret(int offset, boolean select) {
+        caret = Math.max(0, Math.min(document.length(), offset));
+        if (!select) {
+            anchor = caret;
+        }
+        lastTypedAt = 0;
+        ensureCaretVisible();
+        requestLayout();
+    }
+
+    private void keyTyped(KeyEvent e) {
+        String character = e.getCharacter();
+        if (character.isEmpty() || (e.isControlDown() && !e.isAltDown()) || e.isMetaDown()) {
+            return;
+        }
+        char c = character.charAt(0);
+        if (c < 0x20 || c == 0x7F) {
+            return;
+        }
+        replaceSelection(character);
+        e.consume();
+    }
+
+    private void keyPressed(KeyEvent e) {
+        boolean shift = e.isShiftDown();
+        boolean shortcut = e.isShortcutDown();
+        int line = document.lineOf(caret);
+        int column = caret - document.lineStart(line);
+        int pageLines = Math.max(1, (int) (textLayer.getHeight() / lineHeight) - 1);
+        KeyCode code = e.getCode();
+
+        if (shortcut) {
+            switch (code) {
+                case A:
+                    anchor = 0;
+                    moveCaret(document.length(), true);
+                    break;
+                case C:
+                    copySelection();
+                    break;
+                case X:
+                    copySelection();
+                    replaceSelection("");
+                    break;
+                case V:
+                    String pasted = Clipboard.getSystemClipboard().getString();
+                    if (pasted != null) {
+                        replaceSelection(pasted.replace("\r\n", "\n"));
+                    }
+                    break;
+                case Z:
+                    if (shift) {
+                        redo();
+                    } else {
+                        undo();
+                    }
+                    break;
+                case Y:
+                    redo();
+                    break;
+                case HOME:
+                    moveCaret(0, shift);
+                    break;
+                case END:
+                    moveCaret(document.length(), shift);
+                    break;
+                default:
+                    return;
+            }
+            e.consume();
+            return;
+        }
+
+        switch (code) {
+            case LEFT:
+                moveCaret(caret > 0 && Character.isLowSurrogate(document.charAt(caret - 1)) ? caret - 2 : caret - 1, shift);
+                break;
+            case RIGHT:
+                moveCaret(caret < document.length() && Character.isHighSurrogate(document.charAt(caret)) ? caret + 2 : caret + 1, shift);
+                break;
+            case UP:
+                moveCaret(offsetInLine(line - 1, column), shift);
+                break;
+            case DOWN:
+                moveCaret(offsetInLine(line + 1, column), shift);
+                break;
+            case PAGE_UP:
+                moveCaret(offsetInLine(line - pageLines, column), shift);
+                break;
+            case PAGE_DOWN:
+                moveCaret(offsetInLine(line + pageLines, column), shift);
+                break;
+            case HOME:
+                moveCaret(document.lineStart(line), shift);
+                break;
+            case END:
+                moveCaret(document.lineEnd(line), shift);
+                break;
+            case ENTER:
+                replaceSelection("\n");
+                break;
+            case TAB:
+                replaceSelection("\t");
+                break;
+            case BACK_SPACE:
+                if (caret != anchor) {
+                    replaceSelection("");
+                } else if (caret > 0) {
+                    int start = caret - 1;
+                    if (start > 0 && Character.isLowSurrogate(document.charAt(start))) {
+                        start--;
+                    }
+                    replace(start, caret, "");
+                }
+                break;
+            case DELETE:
+                if (caret != anchor) {
+                    replaceSelection("");
+                } else if (caret < document.length()) {
+                    int end = caret + 1;
+                    if (end < document.length() && Character.isLowSurrogate(document.charAt(end))) {
+                        end++;
+                    }
+                    replace(caret, end, "");
+                }
+                break;
+            default:
+                return;
+        }
+        e.consume();
+    }
+
+    private void copySelection() {
+        if (caret == anchor) {
+            return;
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(document.subSequence(selectionStart(), selectionEnd()).toString());
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    private int offsetInLine(int line, int column) {
+        line = Math.max(0, Math.min(document.lineCount() - 1, line));
+        int start = document.lineStart(line);
+        return Math.min(start + column, document.lineEnd(line));
+    }
+
+    private int offsetAt(double x, double y) {
+        int line = (int) Math.floor((y + vbar.getValue() - PADDING) / lineHeight);
+        int column = (int) Math.round((x + hbar.getValue() - PADDING) / charWidth);
+        return offsetInLine(line, Math.max(0, column));
+    }
+
+    private void ensureCaretVisible() {
+        double viewWidth = textLayer.getWidth();
+        double viewHeight = textLayer.getHeight();
+        if (viewWidth <= 0 || viewHeight <= 0) {
+            return;
+        }
+        int line = document.lineOf(caret);
+        int column = caret - document.lineStart(line);
+        widestLine = Math.max(widestLine, column);
+        updateBars(viewWidth, viewHeight);
+
+        double top = PADDING + line * lineHeight;
+        if (top < vbar.getValue()) {
+            vbar.setValue(top - PADDING);
+        } else if (top + lineHeight > vbar.getValue() + viewHeight) {
+            vbar.setValue(clamp(top + lineHeight + PADDING - viewHeight, 0, vbar.getMax()));
+        }
+        double left = PADDING + column * charWidth;
+        if (left < hbar.getValue()) {
+            hbar.setValue(clamp(left - PADDING, 0, hbar.getMax()));
+        } else if (left + charWidth > hbar.getValue() + viewWidth) {
+            hbar.setValue(clamp(left + charWidth + PADDING - viewWidth, 0, hbar.getMax()));
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) {
+        return 600;
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        return 400;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double barWidth = vbar.prefWidth(-1);
+        double barHeight = hbar.prefHeight(-1);
+        double viewWidth = Math.max(0, getWidth() - barWidth);
+        double viewHeight = Math.max(0, getHeight() - barHeight);
+
+        textLayer.resizeRelocate(0, 0, viewWidth, viewHeight);
+        clip.setWidth(viewWidth);
+        clip.setHeight(viewHeight);
+        vbar.resizeRelocate(viewWidth, 0, barWidth, viewHeight);
+        hbar.resizeRelocate(0, viewHeight, viewWidth, barHeight);
+
+        double offsetY = vbar.getValue();
+        double offsetX = hbar.getValue();
+        int lineCount = document.lineCount();
+        int firstLine = Math.max(0, (int) Math.floor((offsetY - PADDING) / lineHeight));
+        int visibleLines = (int) Math.ceil(viewHeight / lineHeight) + 1;
+        int lastLine = Math.min(lineCount - 1, firstLine + visibleLines - 1);
+        int firstColumn = Math.max(0, (int) Math.floor((offsetX - PADDING) / charWidth));
+        int visibleColumns = (int) Math.ceil(viewWidth / charWidth) + 1;
+
+        ensureNodes(Math.max(0, lastLine - firstLine + 1));
+
+        int selStart = selectionStart();
+        int selEnd = selectionEnd();
+        int lineStart = document.lineStart(firstLine);
+        for (int i = 0; i < lineNodes.size(); i++) {
+            int line = firstLine + i;
+            int lineEnd = document.lineEnd(line);
+            widestLine = Math.max(widestLine, lineEnd - lineStart);
+            double y = PADDING + line * lineHeight - offsetY;
+
+            // Only the columns in view are copied out of the rope
+            int from = Math.min(lineEnd, lineStart + firstColumn);
+            int to = Math.min(lineEnd, from + visibleColumns);
+            Text text = lineNodes.get(i);
+            text.setText(document.subSequence(from, to).toString().replace('\t', ' '));
+            text.relocate(PADDING + (from - lineStart) * charWidth - offsetX, y);
+
+            Rectangle selection = selectionNodes.get(i);
+            int s = Math.max(selStart, lineStart);
+            int e = Math.min(selEnd, lineEnd);
+            boolean spansBreak = selEnd > lineEnd && lineEnd < document.length();
+            if (selStart != selEnd && s <= e && (s < e || spansBreak)) {
+                selection.setVisible(true);
+                selection.setX(PADDING + (s - lineStart) * charWidth - offsetX);
+                selection.setY(y);
+                selection.setWidth((e - s + (spansBreak ? 1 : 0)) * charWidth);
+                selection.setHeight(lineHeight);
+            } else {
+                selection.setVisible(false);
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        // Caret
+        int caretLine = document.lineOf(caret);
+        int caretColumn = caret - document.lineStart(caretLine);
+        caretShape.setX(PADDING + caretColumn * charWidth - offsetX);
+        caretShape.setY(PADDING + caretLine * lineHeight - offsetY);
+        caretShape.setVisible(isFocused() && caretLine >= firstLine && caretLine <= lastLine);
+
+        updateBars(viewWidth, viewHeight);
+    }
+
+    private void updateBars(double viewWidth, double viewHeight) {
+        double contentHeight = 2 * PADDING + document.lineCount() * lineHeight;
+        double contentWidth = 2 * PADDING + (widestLine + 1) * charWidth;
+        vbar.setMax(Math.max(0, contentHeight - viewHeight));
+        vbar.setVisibleAmount(viewHeight);
+        vbar.setUnitIncrement(lineHeight);
+        vbar.setBlockIncrement(Math.max(lineHeight, viewHeight - lineHeight));
+        hbar.setMax(Math.max(0, contentWidth - viewWidth));
+        hbar.setVisibleAmount(viewWidth);
+        hbar.setUnitIncrement(charWidth * 4);
+        hbar.setBlockIncrement(Math.max(charWidth, viewWidth - charWidth));
+        if (vbar.getValue() > vbar.getMax()) {
+            vbar.setValue(vbar.getMax());
+        }
+        if (hbar.getValue() > hbar.getMax()) {
+            hbar.setValue(hbar.getMax());
+        }
+    }
+
+    private void ensureNodes(int count) {
+        if (lineNodes.size() == count) {
+            return;
+        }
+        while (lineNodes.size() < count) {
+            Rectangle selection = new Rectangle();
+            selection.setFill(Color.rgb(0, 120, 215, 0.3));
+            selection.setManaged(false);
+            Text text = new Text();
+            text.setFont(FONT);
+            text.setTextOrigin(VPos.TOP);
+            text.setManaged(false);
+            selectionNodes.add(selection);
+            lineNodes.add(text);
+        }
+        while (lineNodes.size() > count) {
+            lineNodes.remove(lineNodes.size() - 1);
+            selectionNodes.remove(selectionNodes.size() - 1);
+        }
+        List<Node> children = new ArrayList<>(selectionNodes);
+        children.addAll(lineNodes);
+        children.add(caretShape);
+        textLayer.getChildren().setAll(children);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
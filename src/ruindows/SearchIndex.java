@@ -0,0 +1,312 @@
+package ruindows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over the saved text files.
+//
+// Updates replace the postings of a single document and run on the index
+// thread. Queries take a read lock, rank matches with BM25 and treat the last
+// query word as a prefix so results can follow the user while they type.
+public class SearchIndex {
+
+    private static final int MAX_TOKEN_LENGTH = 64;
+    private static final int SNIPPET_BEFORE = 30;
+    private static final int SNIPPET_AFTER = 70;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    public static class Result {
+        private final String name;
+        private final double score;
+        private final String snippet;
+
+        Result(String name, double score, String snippet) {
+            this.name = name;
+            this.score = score;
+            this.snippet = snippet;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public String getSnippet() {
+            return snippet;
+        }
+    }
+
+    private static class Posting {
+        int frequency;
+        final int firstOffset;
+
+        Posting(int firstOffset) {
+            this.firstOffset = firstOffset;
+        }
+    }
+
+    private final DocumentResidency.Loader loader;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Map<String, Posting>> postings = new TreeMap<>();
+    private final Map<String, Set<String>> documentTerms = new HashMap<>();
+    private final Map<String, Integer> documentLengths = new HashMap<>();
+    private long totalLength = 0;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "search-index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "search-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong latestQuery = new AtomicLong();
+
+    // The loader provides document text for snippets, it runs on the search
+    // thread for every result shown and should not make the documents resident
+    public SearchIndex(DocumentResidency.Loader loader) {
+        this.loader = loader;
+    }
+
+    // Re-indexes one document in the background, content must not change afterwards
+    public void update(String name, CharSequence content) {
+        indexer.execute(() -> replace(name, tokenize(content)));
+    }
+
+    public void remove(String name) {
+        indexer.execute(() -> replace(name, new HashMap<>()));
+    }
+
+    // Indexes existing documents in the background, reading each through the given loader
+    public void addAll(List<String> names, DocumentResidency.Loader source) {
+        List<String> copy = new ArrayList<>(names);
+        indexer.execute(() -> {
+            for (String name : copy) {
+                try {
+                    CharSequence content = source.load(name);
+                    if (content != null) {
+                        replace(name, tokenize(content));
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not index " + name + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void replace(String name, Map<String, Posting> terms) {
+        int length = 0;
+        for (Posting posting : terms.values()) {
+            length += posting.frequency;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Set<String> previous = documentTerms.remove(name);
+            if (previous != null) {
+                for (String term : previous) {
+                    Map<String, Posting> documents = postings.get(term);
+                    documents.remove(name);
+                    if (documents.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+                totalLength -= documentLengths.remove(name);
+            }
+            if (terms.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String, Posting> entry : terms.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(name, entry.getValue());
+            }
+            documentTerms.put(name, new HashSet<>(terms.keySet()));
+            documentLengths.put(name, length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Runs the query on the search thread; queries overtaken by a newer one are skipped
+    public void searchAsync(String query, int limit, Consumer<List<Result>> callback) {
+        long sequence = latestQuery.incrementAndGet();
+        searcher.execute(() -> {
+            if (sequence == latestQuery.get()) {
+                callback.accept(search(query, limit));
+            }
+        });
+    }
+
+    public List<Result> search(String query, int limit) {
+        List<String> typed = queryWords(query);
+        if (typed.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // The last word typed is the one being completed, even if it was typed before
+        String prefix = typed.get(typed.size() - 1);
+        Set<String> words = new LinkedHashSet<>(typed.subList(0, typed.size() - 1));
+
+        List<Result> ranked = new ArrayList<>();
+        Map<String, Integer> firstOffsets = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int documentCount = documentLengths.size();
+            double averageLength = documentCount == 0 ? 1 : (double) totalLength / documentCount;
+            Map<String, Double> scores = null;
+
+            // Every complete word has to match
+            for (String word : words) {
+                Map<String, Posting> documents = postings.get(word);
+                if (documents == null) {
+                    return ranked;
+                }
+                scores = intersect(scores, documents, documentCount, averageLength, firstOffsets);
+                if (scores.isEmpty()) {
+                    return ranked;
+                }
+            }
+
+            // The last word matches any term starting with it. Every such term
+            // is scored, so the best match does not depend on where its term
+            // sorts; a short prefix costs as much as its postings, and a newer
+            // query skips this one if it is still waiting
+            Map<String, Double> prefixScores = new HashMap<>();
+            for (Map.Entry<String, Map<String, Posting>> entry
+                    : postings.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+                Map<String, Double> termScores = intersect(scores, entry.getValue(), documentCount, averageLength,
+                        firstOffsets);
+                for (Map.Entry<String, Double> score : termScores.entrySet()) {
+                    prefixScores.merge(score.getKey(), score.getValue(), Math::max);
+                }
+            }
+
+            for (Map.Entry<String, Double> entry : prefixScores.entrySet()) {
+                ranked.add(new Result(entry.getKey(), entry.getValue(), null));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        ranked.sort((a, b) -> Double.compare(b.score, a.score));
+        List<Result> top = new ArrayList<>();
+        for (Result result : ranked.subList(0, Math.min(limit, ranked.size()))) {
+            top.add(new Result(result.name, result.score, snippet(result.name, firstOffsets.get(result.name))));
+        }
+        return top;
+    }
+
+    // Adds the BM25 score of one term to every document in scores that contains it
+    private Map<String, Double> intersect(Map<String, Double> scores, Map<String, Posting> documents,
+            int documentCount, double averageLength, Map<String, Integer> firstOffsets) {
+        Map<String, Double> result = new HashMap<>();
+        double idf = Math.log(1 + (documentCount - documents.size() + 0.5) / (documents.size() + 0.5));
+        Iterable<String> candidates = scores == null ? documents.keySet() : scores.keySet();
+        for (String name : candidates) {
+            Posting posting = documents.get(name);
+            if (posting == null) {
+                continue;
+            }
+            double length = documentLengths.get(name);
+            double tf = posting.frequency * (K1 + 1) / (posting.frequency + K1 * (1 - B + B * length / averageLength));
+            double previous = scores == null ? 0 : scores.get(name);
+            result.put(name, previous + idf * tf);
+            firstOffsets.merge(name, posting.firstOffset, Math::min);
+        }
+        return result;
+    }
+
+    private String snippet(String name, Integer offset) {
+        try {
+            CharSequence content = loader.load(name);
+            if (content == null) {
+                return "";
+            }
+            int at = offset == null ? 0 : Math.min(offset, content.length());
+            int start = Math.max(0, at - SNIPPET_BEFORE);
+            int end = Math.min(content.length(), at + SNIPPET_AFTER);
+            String snippet = content.subSequence(start, end).toString().replaceAll("\\s+", " ").trim();
+            return (start > 0 ? "..." : "") + snippet + (end < content.length() ? "..." : "");
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    // Lower-cased words of a query as typed, repeats included, split like documents
+    private static List<String> queryWords(String query) {
+        List<String> words = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (token.length() < MAX_TOKEN_LENGTH) {
+                    token.append(Character.toLowerCase(c));
+                }
+            } else if (token.length() > 0) {
+                words.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    // Lower-cased words with their frequency and first offset, in order of first appearance
+    private static Map<String, Posting> tokenize(CharSequence content) {
+        Map<String, Posting> terms = new LinkedHashMap<>();
+        StringBuilder token = new StringBuilder();
+        int offset = 0;
+        int tokenStart = 0;
+        for (String chunk : Rope.chunks(content)) {
+            for (int i = 0; i < chunk.length(); i++, offset++) {
+                char c = chunk.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    if (token.length() == 0) {
+                        tokenStart = offset;
+                    }
+                    if (token.length() < MAX_TOKEN_LENGTH) {
+                        token.append(Character.toLowerCase(c));
+                    }
+                } else if (token.length() > 0) {
+                    addToken(terms, token, tokenStart);
+                }
+            }
+        }
+        if (token.length() > 0) {
+            addToken(terms, token, tokenStart);
+        }
+        return terms;
+    }
+
+    private static void addToken(Map<String, Posting> terms, StringBuilder token, int offset) {
+        terms.computeIfAbsent(token.toString(), k -> new Posting(offset)).frequency++;
+        token.setLength(0);
+    }
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return documentLengths.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ruindows;
+
+import javafx.scene.image.Image;
+
+// Makes the shortcuts on the desktop. Bundled icons are decoded once at
+// icon size and shared; an image's shortcut asks the thumbnails for its icon
+// each time its cell is bound, on behalf of the desktop.
+public class ShortcutFactory {
+
+    private final ImageCache icons;
+    private final Thumbnails thumbnails;
+    private final int iconSize;
+    private final Object desktop;
+
+    public ShortcutFactory(ImageCache icons, Thumbnails thumbnails, int iconSize, Object desktop) {
+        this.icons = icons;
+        this.thumbnails = thumbnails;
+        this.iconSize = iconSize;
+        this.desktop = desktop;
+    }
+
+    // A bundled icon at the size shortcuts show it, from any thread
+    public Image icon(String resource) {
+        return icons.get(resource, iconSize, iconSize);
+    }
+
+    public DesktopShortcut create(Image icon, String name, Runnable action) {
+        return new DesktopShortcut(name, () -> icon, action);
+    }
+
+    // Only bound on the FX thread, or on the thread laying out a desktop that is not shown
+    public DesktopShortcut createImage(String fileName, Runnable action) {
+        return new DesktopShortcut(fileName, () -> thumbnails.get(desktop, fileName), action);
+    }
+}
@@ -0,0 +1,215 @@
+package ruindows;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Notices when the FX thread stops taking work and finds out what it is doing.
+//
+// A daemon thread posts a ping to the FX thread every 50 ms. A ping that waits
+// longer than the threshold means pulses were missed; from then on the FX
+// thread's stack is sampled until the ping runs. Each stall is appended to a
+// log that rolls over at 1 MB, with the frames most often on top of the stack
+// and the application frames most often on it, and is recorded as a
+// Flight Recorder event and in the "fx.stall" histogram.
+//
+// Modal dialogs run a nested event loop, so pings are answered while they are
+// open and they do not count as stalls.
+public class StallWatchdog {
+
+    private static final long PING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_LOG_BYTES = 1024 * 1024;
+    private static final int KEPT_LOGS = 3;
+    private static final int TOP_FRAMES = 5;
+    private static final int MAX_STACK_DEPTH = 20;
+    private static final String APPLICATION_PACKAGE = "ruindows.";
+
+    private final Path logFile;
+    private final long thresholdNanos;
+    private final Metrics metrics;
+    private Thread fxThread;
+    private Thread thread;
+    private volatile boolean running;
+
+    // Sequence number of the last ping the FX thread ran, and when
+    private volatile long answered = 0;
+    private volatile long answeredAt = 0;
+
+    public StallWatchdog(Path logFile, long thresholdMillis, Metrics metrics) {
+        this.logFile = logFile;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.metrics = metrics;
+    }
+
+    // Call on the FX thread
+    public void start() {
+        fxThread = Thread.currentThread();
+        running = true;
+        thread = new Thread(this::watch, "fx-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Call before shutting down work on the FX thread, which would otherwise look like a stall
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void watch() {
+        long sent = 0;
+        while (running) {
+            long ping = ++sent;
+            long postedAt = System.nanoTime();
+            UiEvents.Stall event = new UiEvents.Stall();
+            event.begin();
+            Thread watcher = Thread.currentThread();
+            try {
+                Platform.runLater(() -> {
+                    answeredAt = System.nanoTime();
+                    answered = ping;
+                    LockSupport.unpark(watcher);
+                });
+            } catch (IllegalStateException e) {
+                // The toolkit has exited
+                return;
+            }
+
+            if (!awaitAnswer(ping, postedAt + thresholdNanos)) {
+                if (!running) {
+                    return;
+                }
+                List<StackTraceElement[]> samples = sampleUntilAnswered(ping);
+                if (!running) {
+                    return;
+                }
+                report(answeredAt - postedAt, samples, event);
+            }
+
+            // An unpark that came before the ping was awaited may cut a single park short
+            long next = System.nanoTime() + PING_INTERVAL_NANOS;
+            for (long wait = PING_INTERVAL_NANOS; running && wait > 0; wait = next - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    // True when the ping ran before the deadline
+    private boolean awaitAnswer(long ping, long deadline) {
+        while (running && answered != ping) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(remaining);
+        }
+        return answered == ping;
+    }
+
+    private List<StackTraceElement[]> sampleUntilAnswered(long ping) {
+        List<StackTraceElement[]> samples = new ArrayList<>();
+        while (running && answered != ping) {
+            samples.add(fxThread.getStackTrace());
+            LockSupport.parkNanos(SAMPLE_INTERVAL_NANOS);
+        }
+        return samples;
+    }
+
+    private void report(long stallNanos, List<StackTraceElement[]> samples, UiEvents.Stall event) {
+        // Where the thread was running, and which of our own methods it was in
+        Map<String, Integer> leafFrames = new HashMap<>();
+        Map<String, Integer> applicationFrames = new HashMap<>();
+        Map<String, StackTraceElement[]> exampleStacks = new HashMap<>();
+        for (StackTraceElement[] stack : samples) {
+            if (stack.length == 0) {
+                continue;
+            }
+            leafFrames.merge(stack[0].toString(), 1, Integer::sum);
+            for (StackTraceElement frame : stack) {
+                if (frame.getClassName().startsWith(APPLICATION_PACKAGE)) {
+                    applicationFrames.merge(frame.toString(), 1, Integer::sum);
+                    exampleStacks.putIfAbsent(frame.toString(), stack);
+                    break;
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> topLeaves = top(leafFrames);
+        List<Map.Entry<String, Integer>> topApplication = top(applicationFrames);
+
+        metrics.record("fx.stall", stallNanos);
+        event.samples = samples.size();
+        event.topFrame = topApplication.isEmpty() ? (topLeaves.isEmpty() ? null : topLeaves.get(0).getKey())
+                : topApplication.get(0).getKey();
+        event.commit();
+
+        StringBuilder out = new StringBuilder();
+        out.append(LocalDateTime.now()).append(" stall ").append(TimeUnit.NANOSECONDS.toMillis(stallNanos))
+                .append(" ms, ").append(samples.size()).append(" samples\n");
+        appendFrames(out, "  running in:", topLeaves, samples.size());
+        appendFrames(out, "  called from:", topApplication, samples.size());
+        if (!topApplication.isEmpty()) {
+            out.append("  example stack:\n");
+            StackTraceElement[] stack = exampleStacks.get(topApplication.get(0).getKey());
+            for (int i = 0; i < Math.min(stack.length, MAX_STACK_DEPTH); i++) {
+                out.append("    at ").append(stack[i]).append('\n');
+            }
+        }
+        try {
+            append(out.toString());
+        } catch (IOException e) {
+            System.err.println("Could not write stall log: " + e.getMessage());
+        }
+    }
+
+    private static List<Map.Entry<String, Integer>> top(Map<String, Integer> counts) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> b.getValue() - a.getValue());
+        return entries.subList(0, Math.min(TOP_FRAMES, entries.size()));
+    }
+
+    private static void appendFrames(StringBuilder out, String heading, List<Map.Entry<String, Integer>> frames,
+            int samples) {
+        if (frames.isEmpty()) {
+            return;
+        }
+        out.append(heading).append('\n');
+        for (Map.Entry<String, Integer> frame : frames) {
+            out.append(String.format("    %3d%%  %s\n", 100 * frame.getValue() / Math.max(1, samples), frame.getKey()));
+        }
+    }
+
+    // Appends to the log, moving full logs to .1, .2, ... and dropping the oldest
+    private void append(String entry) throws IOException {
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        if (Files.exists(logFile) && Files.size(logFile) + entry.length() > MAX_LOG_BYTES) {
+            for (int i = KEPT_LOGS - 1; i >= 1; i--) {
+                Path older = rolled(i);
+                if (Files.exists(older)) {
+                    Files.move(older, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(logFile, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.write(logFile, entry.getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private Path rolled(int generation) {
+        return logFile.resolveSibling(logFile.getFileName() + "." + generation);
+    }
+}
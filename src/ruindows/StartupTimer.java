@@ -0,0 +1,44 @@
+package ruindows;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Records when each startup phase was reached, in milliseconds since the JVM
+// was launched, so time-to-first-frame and time-to-desktop can be tracked.
+// Only the first time a phase is reached counts.
+public class StartupTimer {
+
+    private final long originNanos;
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+
+    public StartupTimer() {
+        long sinceLaunch = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        originNanos = System.nanoTime() - Math.max(0, sinceLaunch) * 1_000_000;
+    }
+
+    // Returns the milliseconds since launch at which the phase was first reached
+    public synchronized long mark(String phase) {
+        return marks.computeIfAbsent(phase, k -> (System.nanoTime() - originNanos) / 1_000_000);
+    }
+
+    public synchronized boolean isMarked(String phase) {
+        return marks.containsKey(phase);
+    }
+
+    // Phases in the order they were reached
+    public synchronized Map<String, Long> getMarks() {
+        return new LinkedHashMap<>(marks);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("Startup[");
+        String separator = "";
+        for (Map.Entry<String, Long> e : marks.entrySet()) {
+            sb.append(separator).append(e.getKey()).append('=').append(e.getValue()).append("ms");
+            separator = ", ";
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,290 @@
+package ruindows;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.event.EventHandler;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+// Background work of the whole application, and the way its results get back
+// to the FX thread.
+//
+// Work runs on one of three bounded lanes: COMPUTE for decoding, hashing and
+// pixel operations, IO for downloads, and STORE, a single thread that keeps
+// writes to the file store in order. Results and other UI updates are not
+// posted one by one; they are queued and applied together once per pulse,
+// so a burst of them costs one CSS and layout pass. An update published under
+// a key replaces the one still waiting under that key, e.g. for progress.
+// Updates run during the pulse, so they cannot wait on a modal dialog; they
+// have to show it with Platform.runLater or non-modally.
+//
+// Tasks can belong to an owner. Cancelling the owner drops the tasks that
+// have not started and the results of those that have; running tasks are
+// never interrupted, since an interrupt during a channel transfer would close
+// the file store. Tasks owned by a window are cancelled when it is hidden.
+public class TaskScheduler {
+
+    public enum Lane {
+        COMPUTE,
+        IO,
+        STORE
+    }
+
+    public interface Work<T> {
+        T run() throws Exception;
+    }
+
+    private static class Task {
+        final Object owner;
+        volatile boolean cancelled;
+        Future<?> future;
+
+        Task(Object owner) {
+            this.owner = owner;
+        }
+    }
+
+    private final ExecutorService computeExecutor;
+    private final ExecutorService ioExecutor;
+    private final ScheduledExecutorService storeExecutor;
+    private final Map<Object, Set<Task>> owned = new ConcurrentHashMap<>();
+    // Windows whose hidden handler is installed
+    private final Set<Window> watchedWindows = ConcurrentHashMap.newKeySet();
+
+    // Updates waiting for the next pulse
+    private final Object lock = new Object();
+    private List<Runnable> pending = new ArrayList<>();
+    private Map<Object, Runnable> pendingByKey = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    private long batches = 0;
+    private long updates = 0;
+
+    private final AnimationTimer flusher = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+
+    public TaskScheduler(int computeThreads, int ioThreads) {
+        computeExecutor = Executors.newFixedThreadPool(computeThreads, threads("worker"));
+        ioExecutor = Executors.newFixedThreadPool(ioThreads, threads("download"));
+        storeExecutor = Executors.newSingleThreadScheduledExecutor(threads("file-store"));
+    }
+
+    private static ThreadFactory threads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public Executor executor(Lane lane) {
+        switch (lane) {
+            case COMPUTE:
+                return computeExecutor;
+            case IO:
+                return ioExecutor;
+            default:
+                return storeExecutor;
+        }
+    }
+
+    // The store thread, for work that schedules itself such as the autosave journal
+    public ScheduledExecutorService getStoreExecutor() {
+        return storeExecutor;
+    }
+
+    // Runs work that nothing waits for and that belongs to no window
+    public void execute(Lane lane, Runnable work) {
+        executor(lane).execute(work);
+    }
+
+    // Runs work on the lane and hands its result or failure to onDone on the FX
+    // thread, with the next batch. Call on the FX thread when owner is a window.
+    public <T> void submit(Object owner, Lane lane, Work<T> work, BiConsumer<? super T, Throwable> onDone) {
+        Task task = new Task(owner);
+        if (owner != null) {
+            owned.compute(owner, (o, tasks) -> {
+                Set<Task> set = tasks != null ? tasks : ConcurrentHashMap.newKeySet();
+                set.add(task);
+                return set;
+            });
+            if (owner instanceof Window) {
+                cancelOnHide((Window) owner);
+            }
+        }
+        task.future = ((ExecutorService) executor(lane)).submit(() -> {
+            if (task.cancelled) {
+                return;
+            }
+            T result = null;
+            Throwable error = null;
+            try {
+                result = work.run();
+            } catch (Throwable t) {
+                error = t;
+            }
+            T finalResult = result;
+            Throwable finalError = error;
+            publish(() -> {
+                forget(task);
+                if (!task.cancelled) {
+                    onDone.accept(finalResult, finalError);
+                }
+            });
+        });
+    }
+
+    private void cancelOnHide(Window window) {
+        if (watchedWindows.add(window)) {
+            EventHandler<WindowEvent> handler = new EventHandler<WindowEvent>() {
+                @Override
+                public void handle(WindowEvent e) {
+                    window.removeEventHandler(WindowEvent.WINDOW_HIDDEN, this);
+                    watchedWindows.remove(window);
+                    cancel(window);
+                }
+            };
+            window.addEventHandler(WindowEvent.WINDOW_HIDDEN, handler);
+        }
+    }
+
+    private void forget(Task task) {
+        if (task.owner != null) {
+            owned.computeIfPresent(task.owner, (o, tasks) -> {
+                tasks.remove(task);
+                return tasks.isEmpty() ? null : tasks;
+            });
+        }
+    }
+
+    // Drops the owner's tasks that have not started and the results of the rest
+    public void cancel(Object owner) {
+        Set<Task> tasks = owned.remove(owner);
+        if (tasks == null) {
+            return;
+        }
+        for (Task task : tasks) {
+            task.cancelled = true;
+            if (task.future != null) {
+                task.future.cancel(false);
+            }
+        }
+    }
+
+    // Tasks of the owner that are queued, running or waiting to publish
+    public int getTaskCount(Object owner) {
+        Set<Task> tasks = owned.get(owner);
+        return tasks == null ? 0 : tasks.size();
+    }
+
+    // Applies the update on the FX thread with the next batch, from any thread
+    public void publish(Runnable update) {
+        synchronized (lock) {
+            pending.add(update);
+            scheduleFlush();
+        }
+    }
+
+    // Same, replacing an update published under the same key that is still waiting
+    public void publish(Object key, Runnable update) {
+        synchronized (lock) {
+            pendingByKey.put(key, update);
+            scheduleFlush();
+        }
+    }
+
+    // Called holding the lock
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        if (Platform.isFxApplicationThread()) {
+            flusher.start();
+        } else {
+            Platform.runLater(flusher::start);
+        }
+    }
+
+    // Runs on a pulse, before CSS and layout, so everything below shares one layout pass
+    private void flush() {
+        List<Runnable> batch;
+        Map<Object, Runnable> batchByKey;
+        synchronized (lock) {
+            batch = pending;
+            batchByKey = pendingByKey;
+            pending = new ArrayList<>();
+            pendingByKey = new LinkedHashMap<>();
+            if (batch.isEmpty() && batchByKey.isEmpty()) {
+                // Nothing came in since the last pulse, stop asking for pulses
+                flushScheduled = false;
+                flusher.stop();
+                return;
+            }
+            batches++;
+            updates += batch.size() + batchByKey.size();
+        }
+        // Keyed updates are progress and the like, so they go before the results that end it
+        for (Runnable update : batchByKey.values()) {
+            run(update);
+        }
+        for (Runnable update : batch) {
+            run(update);
+        }
+    }
+
+    // A failing update is reported like any other exception on the FX thread,
+    // without keeping the rest of the batch from running
+    private static void run(Runnable update) {
+        try {
+            update.run();
+        } catch (RuntimeException e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    public long getBatchCount() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    public long getUpdateCount() {
+        synchronized (lock) {
+            return updates;
+        }
+    }
+
+    // Lets queued work finish and stops every lane. Downloads and writes hand
+    // thumbnails to COMPUTE, so it is the last to stop taking work.
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        ioExecutor.shutdown();
+        ioExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        storeExecutor.shutdown();
+        storeExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        computeExecutor.shutdown();
+        computeExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,163 @@
+package ruindows;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Desktop icons of images.
+//
+// Binding a cell only looks the icon up in the image cache. Reading it from
+// storage, or making it from the image and storing it, happens on the COMPUTE
+// lane while the cell shows a placeholder, and onReady is called once it is
+// in the cache. An image whose icon could not be read or made keeps the
+// placeholder and is not tried again until its content, and so its key,
+// changes.
+public class Thumbnails {
+
+    private static final String CACHE_PREFIX = "thumbnail/";
+
+    // Where images and their icons are kept, called from any thread
+    public interface Storage {
+        // Same for every name with the same content, null if there is no such image
+        String imageKey(String fileName);
+
+        // Null if the image is gone
+        byte[] readImage(String fileName) throws IOException;
+
+        // Null if the icon was not made yet
+        byte[] readThumbnail(String key) throws IOException;
+
+        boolean hasThumbnail(String key);
+
+        void writeThumbnail(String key, byte[] data) throws IOException;
+    }
+
+    private final Storage storage;
+    private final ImageCache cache;
+    private final TaskScheduler tasks;
+    private final int size;
+    private final Runnable onReady;
+    private final Image placeholder;
+    // Keys being loaded or made, and keys that failed
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    // onReady may be called on any thread
+    public Thumbnails(Storage storage, ImageCache cache, TaskScheduler tasks, int size, Runnable onReady) {
+        this.storage = storage;
+        this.cache = cache;
+        this.tasks = tasks;
+        this.size = size;
+        this.onReady = onReady;
+        this.placeholder = placeholder(size);
+    }
+
+    private static Image placeholder(int size) {
+        WritableImage image = new WritableImage(size, size);
+        Color fill = Color.rgb(255, 255, 255, 0.35);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.getPixelWriter().setColor(x, y, fill);
+            }
+        }
+        return image;
+    }
+
+    // Only on the FX thread, or on the thread laying out a desktop that is not
+    // shown. Starts loading the icon on behalf of owner if it is not cached,
+    // returning the placeholder until it is; cancelling the owner before the
+    // load ran leaves the icon to the next prepare or change.
+    public Image get(Object owner, String fileName) {
+        String key = storage.imageKey(fileName);
+        if (key == null || failed.contains(key)) {
+            return placeholder;
+        }
+        Image icon = cache.getIfPresent(CACHE_PREFIX + key);
+        if (icon != null) {
+            return icon;
+        }
+        if (pending.add(key)) {
+            tasks.submit(owner, TaskScheduler.Lane.COMPUTE, () -> load(fileName, key), (loaded, error) -> {
+                pending.remove(key);
+                if (error != null) {
+                    failed(fileName, key, error);
+                } else if (loaded != null) {
+                    onReady.run();
+                }
+            });
+        }
+        return placeholder;
+    }
+
+    // Makes the icon of a new or changed image ahead of it being shown, from any thread
+    public void prepare(String fileName) {
+        String key = storage.imageKey(fileName);
+        if (key == null || storage.hasThumbnail(key) || !pending.add(key)) {
+            return;
+        }
+        tasks.execute(TaskScheduler.Lane.COMPUTE, () -> {
+            try {
+                if (make(fileName, key) != null) {
+                    onReady.run();
+                }
+            } catch (IOException | RuntimeException e) {
+                failed(fileName, key, e);
+            } finally {
+                pending.remove(key);
+            }
+        });
+    }
+
+    // Forgets the icon and any failure of content that changed or is gone
+    public void forget(String key) {
+        cache.remove(CACHE_PREFIX + key);
+        failed.remove(key);
+    }
+
+    public Image getPlaceholder() {
+        return placeholder;
+    }
+
+    private void failed(String fileName, String key, Throwable error) {
+        failed.add(key);
+        System.err.println("Could not make a thumbnail of " + fileName + ": " + error.getMessage());
+    }
+
+    // Cached icon, or null if the image changed meanwhile
+    private Image load(String fileName, String key) throws IOException {
+        byte[] data = storage.readThumbnail(key);
+        Image icon;
+        if (data != null) {
+            icon = new Image(new ByteArrayInputStream(data));
+            if (icon.isError()) {
+                throw new IOException("unreadable thumbnail");
+            }
+            cache.put(CACHE_PREFIX + key, icon);
+        } else {
+            icon = make(fileName, key);
+        }
+        return icon;
+    }
+
+    // Stores and caches the icon, or returns null if the image changed meanwhile
+    private Image make(String fileName, String key) throws IOException {
+        byte[] data = storage.readImage(fileName);
+        if (data == null || !key.equals(storage.imageKey(fileName))) {
+            // The new content gets its own thumbnail
+            return null;
+        }
+        // Scaled while decoding, so the full picture is never held
+        Image icon = new Image(new ByteArrayInputStream(data), size, size, true, true);
+        if (icon.isError()) {
+            throw new IOException("not a readable image");
+        }
+        storage.writeThumbnail(key, PixelPipeline.encodePng(PixelPipeline.read(icon)));
+        cache.put(CACHE_PREFIX + key, icon);
+        return icon;
+    }
+}
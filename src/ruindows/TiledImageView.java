@@ -0,0 +1,330 @@
+package ruindows;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Orientation;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+// Zoomable, scrollable view of one image.
+//
+// When an image is set, a pyramid of it is built on the COMPUTE lane, owned
+// by the window the view is in; a newer image or closing the window stops the
+// build and drops what it made. From then on only the tiles that intersect
+// the viewport are shown, taken from the level closest to the zoom, so
+// zooming out never resamples the whole photo and zooming in never creates a
+// huge texture. Until the pyramid is ready the image is shown as a whole;
+// after that the view lets go of it, so only the pyramid holds the pixels.
+// Dragging over the image selects a rectangle in image coordinates.
+public class TiledImageView extends Region {
+
+    private final Pane tileLayer = new Pane();
+    private final ImageView preview = new ImageView();
+    private final List<ImageView> tileViews = new ArrayList<>();
+    private final Rectangle selectionMarker = new Rectangle();
+    private final ScrollBar hbar = new ScrollBar();
+    private final ScrollBar vbar = new ScrollBar();
+    private final Rectangle clip = new Rectangle();
+    private final ObjectProperty<Rectangle2D> selection = new SimpleObjectProperty<>();
+    private final TaskScheduler tasks;
+    private final Window owner;
+
+    // Only until the pyramid is ready
+    private Image image;
+    private double imageWidth = 0;
+    private double imageHeight = 0;
+    private ImagePyramid pyramid;
+    private double zoom = 1;
+    private double originX = 0;
+    private double originY = 0;
+    private double anchorX;
+    private double anchorY;
+    private Runnable onImageChanged = () -> { };
+    private Consumer<Image> onPyramidReady = image -> { };
+    private Consumer<Throwable> onBuildFailed = error -> {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, error);
+    };
+    // Counts the images set, a build whose count is no longer current stops
+    private volatile long builds = 0;
+
+    public TiledImageView(TaskScheduler tasks, Window owner) {
+        this.tasks = tasks;
+        this.owner = owner;
+        owner.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> builds++);
+        tileLayer.setManaged(false);
+        tileLayer.setClip(clip);
+        preview.setSmooth(true);
+        selectionMarker.setFill(Color.rgb(0, 120, 215, 0.2));
+        selectionMarker.setStroke(Color.rgb(0, 120, 215));
+        selectionMarker.setManaged(false);
+        selectionMarker.setMouseTransparent(true);
+        tileLayer.getChildren().addAll(preview, selectionMarker);
+
+        hbar.setOrientation(Orientation.HORIZONTAL);
+        vbar.setOrientation(Orientation.VERTICAL);
+        hbar.valueProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+        vbar.valueProperty().addListener((obs, oldVal, newVal) -> requestLayout());
+        selection.addListener((obs, oldVal, newVal) -> requestLayout());
+
+        setOnScroll(e -> {
+            if (hbar.isVisible()) {
+                hbar.setValue(clamp(hbar.getValue() - e.getDeltaX(), hbar.getMin(), hbar.getMax()));
+            }
+            if (vbar.isVisible()) {
+                vbar.setValue(clamp(vbar.getValue() - e.getDeltaY(), vbar.getMin(), vbar.getMax()));
+            }
+            e.consume();
+        });
+
+        tileLayer.setOnMousePressed(e -> {
+            anchorX = toImageX(e.getX());
+            anchorY = toImageY(e.getY());
+            selection.set(null);
+        });
+        tileLayer.setOnMouseDragged(e -> {
+            double x = toImageX(e.getX());
+            double y = toImageY(e.getY());
+            selection.set(new Rectangle2D(Math.min(anchorX, x), Math.min(anchorY, y),
+                    Math.abs(x - anchorX), Math.abs(y - anchorY)));
+        });
+
+        getChildren().addAll(tileLayer, hbar, vbar);
+    }
+
+    // Shows the image as a whole and builds its pyramid in the background
+    public void setImage(Image image) {
+        setImage(image, null);
+    }
+
+    // Same, reusing pixels that were already read from the image
+    public void setImage(Image image, PixelPipeline.Raster raster) {
+        this.image = image;
+        this.imageWidth = image == null ? 0 : image.getWidth();
+        this.imageHeight = image == null ? 0 : image.getHeight();
+        this.pyramid = null;
+        long build = ++builds;
+        selection.set(null);
+        preview.setImage(image);
+        requestLayout();
+        onImageChanged.run();
+        if (image == null || (raster == null && image.getPixelReader() == null)) {
+            return;
+        }
+        tasks.submit(owner, TaskScheduler.Lane.COMPUTE,
+                () -> ImagePyramid.build(raster != null ? raster : PixelPipeline.read(image), () -> builds != build),
+                (built, error) -> {
+                    if (build != builds || error instanceof CancellationException) {
+                        return;
+                    }
+                    if (error != null) {
+                        // The image stays shown as a whole
+                        onBuildFailed.accept(error);
+                        return;
+                    }
+                    Image released = this.image;
+                    pyramid = built;
+                    this.image = null;
+                    preview.setImage(null);
+                    requestLayout();
+                    onPyramidReady.accept(released);
+                });
+    }
+
+    // The image as set, null once the pyramid has its pixels
+    public Image getImage() {
+        return image;
+    }
+
+    // Size of the image in pixels, also after the view let go of it
+    public double getImageWidth() {
+        return imageWidth;
+    }
+
+    public double getImageHeight() {
+        return imageHeight;
+    }
+
+    // Called after every setImage, e.g. to fit the zoom to the new size
+    public void setOnImageChanged(Runnable onImageChanged) {
+        this.onImageChanged = onImageChanged;
+    }
+
+    // Called on the FX thread, during a pulse, with the image the view let go of
+    // once the pyramid holds its pixels
+    public void setOnPyramidReady(Consumer<Image> onPyramidReady) {
+        this.onPyramidReady = onPyramidReady;
+    }
+
+    // Called on the FX thread, during a pulse, when the pyramid could not be built
+    public void setOnBuildFailed(Consumer<Throwable> onBuildFailed) {
+        this.onBuildFailed = onBuildFailed;
+    }
+
+    // Full resolution pixels once the pyramid is ready, otherwise null
+    public PixelPipeline.Raster getRaster() {
+        return pyramid == null ? null : pyramid.getLevel(0);
+    }
+
+    // Screen pixels per image pixel, keeping the point in the middle of the view in place
+    public void setZoom(double zoom) {
+        double centerX = toImageX(tileLayer.getWidth() / 2);
+        double centerY = toImageY(tileLayer.getHeight() / 2);
+        this.zoom = zoom;
+        layout();
+        hbar.setValue(clamp(centerX * zoom - tileLayer.getWidth() / 2, hbar.getMin(), hbar.getMax()));
+        vbar.setValue(clamp(centerY * zoom - tileLayer.getHeight() / 2, vbar.getMin(), vbar.getMax()));
+        requestLayout();
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    // Selected area in image pixels, or null
+    public ObjectProperty<Rectangle2D> selectionProperty() {
+        return selection;
+    }
+
+    // Tile nodes currently in the scene graph
+    public int getTileCount() {
+        return tileViews.size();
+    }
+
+    // Decoded pixels behind the tiles, zero until the pyramid is ready
+    public long getPixelBytes() {
+        return pyramid == null ? 0 : pyramid.getBytes();
+    }
+
+    private double toImageX(double viewX) {
+        return clamp((viewX - originX) / zoom, 0, imageWidth);
+    }
+
+    private double toImageY(double viewY) {
+        return clamp((viewY - originY) / zoom, 0, imageHeight);
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        double height = getHeight();
+        double contentWidth = imageWidth * zoom;
+        double contentHeight = imageHeight * zoom;
+
+        // Scroll bars
+        boolean needH = contentWidth > width;
+        boolean needV = contentHeight > height - (needH ? hbar.prefHeight(-1) : 0);
+        needH = contentWidth > width - (needV ? vbar.prefWidth(-1) : 0);
+        double barH = needH ? hbar.prefHeight(-1) : 0;
+        double barW = needV ? vbar.prefWidth(-1) : 0;
+        double viewWidth = width - barW;
+        double viewHeight = height - barH;
+
+        updateBar(hbar, needH, contentWidth, viewWidth);
+        updateBar(vbar, needV, contentHeight, viewHeight);
+        hbar.resizeRelocate(0, viewHeight, viewWidth, barH);
+        vbar.resizeRelocate(viewWidth, 0, barW, viewHeight);
+
+        tileLayer.resizeRelocate(0, 0, viewWidth, viewHeight);
+        clip.setWidth(viewWidth);
+        clip.setHeight(viewHeight);
+
+        // An image smaller than the view is centered
+        originX = needH ? -hbar.getValue() : (viewWidth - contentWidth) / 2;
+        originY = needV ? -vbar.getValue() : (viewHeight - contentHeight) / 2;
+
+        if (pyramid == null) {
+            ensureTiles(0);
+            preview.setFitWidth(contentWidth);
+            preview.setFitHeight(contentHeight);
+            preview.relocate(originX, originY);
+        } else {
+            layoutTiles(viewWidth, viewHeight);
+        }
+
+        Rectangle2D selected = selection.get();
+        selectionMarker.setVisible(selected != null);
+        if (selected != null) {
+            selectionMarker.setX(originX + selected.getMinX() * zoom);
+            selectionMarker.setY(originY + selected.getMinY() * zoom);
+            selectionMarker.setWidth(selected.getWidth() * zoom);
+            selectionMarker.setHeight(selected.getHeight() * zoom);
+        }
+    }
+
+    private void layoutTiles(double viewWidth, double viewHeight) {
+        int level = pyramid.levelFor(zoom);
+        // Screen pixels per pixel of the chosen level
+        double levelScale = zoom * (1 << level);
+        double stride = ImagePyramid.TILE_SIZE * levelScale;
+        int columns = pyramid.getColumns(level);
+        int rows = pyramid.getRows(level);
+        int firstColumn = Math.max(0, (int) Math.floor(-originX / stride));
+        int lastColumn = Math.min(columns - 1, (int) Math.floor((viewWidth - originX) / stride));
+        int firstRow = Math.max(0, (int) Math.floor(-originY / stride));
+        int lastRow = Math.min(rows - 1, (int) Math.floor((viewHeight - originY) / stride));
+
+        ensureTiles(Math.max(0, lastColumn - firstColumn + 1) * Math.max(0, lastRow - firstRow + 1));
+        int next = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Image tile = pyramid.tile(level, column, row);
+                // Edges are rounded from the tile grid so neighbouring tiles never leave a gap
+                double x0 = Math.round(originX + column * stride);
+                double y0 = Math.round(originY + row * stride);
+                double x1 = Math.round(originX + (column * ImagePyramid.TILE_SIZE + tile.getWidth()) * levelScale);
+                double y1 = Math.round(originY + (row * ImagePyramid.TILE_SIZE + tile.getHeight()) * levelScale);
+                ImageView view = tileViews.get(next++);
+                view.setImage(tile);
+                view.setFitWidth(x1 - x0);
+                view.setFitHeight(y1 - y0);
+                view.relocate(x0, y0);
+            }
+        }
+    }
+
+    private void ensureTiles(int count) {
+        while (tileViews.size() < count) {
+            ImageView view = new ImageView();
+            view.setSmooth(true);
+            view.setManaged(false);
+            view.setMouseTransparent(true);
+            tileViews.add(view);
+            tileLayer.getChildren().add(tileLayer.getChildren().size() - 1, view);
+        }
+        while (tileViews.size() > count) {
+            tileLayer.getChildren().remove(tileViews.remove(tileViews.size() - 1));
+        }
+    }
+
+    private static void updateBar(ScrollBar bar, boolean needed, double content, double viewport) {
+        bar.setVisible(needed);
+        bar.setMin(0);
+        bar.setMax(Math.max(0, content - viewport));
+        bar.setVisibleAmount(viewport);
+        bar.setUnitIncrement(20);
+        bar.setBlockIncrement(Math.max(20, viewport));
+        if (!needed) {
+            bar.setValue(0);
+        } else if (bar.getValue() > bar.getMax()) {
+            bar.setValue(bar.getMax());
+        }
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,163 @@
+package ruindows;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight Recorder events of the operations a user waits for. They cost next
+// to nothing unless a recording is running, e.g. one started with
+// -XX:StartFlightRecording=filename=ruindows.jfr
+public final class UiEvents {
+
+    private UiEvents() {
+    }
+
+    @Name("ruindows.Login")
+    @Label("Login")
+    @Category({"RUindows", "Desktop"})
+    @Description("From pressing Login to the desktop being shown, or the wrong password shaking")
+    public static class Login extends Event {
+        @Label("Success")
+        boolean success;
+
+        @Label("Waited For Desktop")
+        @Description("The desktop was still being built when the password was accepted")
+        boolean waitedForDesktop;
+    }
+
+    @Name("ruindows.CreateShortcuts")
+    @Label("Create Shortcuts")
+    @Category({"RUindows", "Desktop"})
+    public static class CreateShortcuts extends Event {
+        @Label("Shortcuts")
+        int shortcutCount;
+
+        @Label("Text Files")
+        int textFileCount;
+
+        @Label("Image Files")
+        int imageFileCount;
+    }
+
+    @Name("ruindows.SaveTextFile")
+    @Label("Save Text File")
+    @Category({"RUindows", "Files"})
+    @Description("Claiming the name and handing the document to the store, after the name was entered")
+    public static class SaveTextFile extends Event {
+        @Label("File Name")
+        String fileName;
+
+        @Label("Document Length")
+        @Description("Length in characters")
+        long length;
+
+        @Label("Saved")
+        boolean saved;
+    }
+
+    @Name("ruindows.WriteTextFile")
+    @Label("Write Text File")
+    @Category({"RUindows", "Files"})
+    @Description("Writing a document to the file store, off the FX thread")
+    public static class WriteTextFile extends Event {
+        @Label("File Name")
+        String fileName;
+
+        @Label("Document Length")
+        @Description("Length in characters")
+        long length;
+    }
+
+    @Name("ruindows.DownloadImage")
+    @Label("Download Image")
+    @Category({"RUindows", "Files"})
+    @Description("From the name being entered to the shortcut being on the desktop")
+    public static class DownloadImage extends Event {
+        @Label("File Name")
+        String fileName;
+
+        @Label("Source")
+        String source;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("ruindows.ImportFolder")
+    @Label("Import Folder")
+    @Category({"RUindows", "Files"})
+    @Description("From the folder being chosen to its files being on the desktop")
+    public static class ImportFolder extends Event {
+        @Label("Folder")
+        String folder;
+
+        @Label("Text Files")
+        int textCount;
+
+        @Label("Image Files")
+        int imageCount;
+
+        @Label("Failed Files")
+        int failedCount;
+    }
+
+    @Name("ruindows.BuildPage")
+    @Label("Build Page")
+    @Category({"RUindows", "ChRUme"})
+    public static class BuildPage extends Event {
+        @Label("URL")
+        String url;
+
+        @Label("Nodes")
+        int nodeCount;
+    }
+
+    @Name("ruindows.Stall")
+    @Label("FX Thread Stall")
+    @Category({"RUindows", "Windows"})
+    @Description("The FX thread did not take new work for longer than the stall threshold")
+    public static class Stall extends Event {
+        @Label("Stack Samples")
+        int samples;
+
+        @Label("Top Frame")
+        @Description("The application frame most often on the stack, or the top frame if there was none")
+        String topFrame;
+    }
+
+    @Name("ruindows.OpenWindow")
+    @Label("Open Window")
+    @Category({"RUindows", "Windows"})
+    @Description("Building an application window and showing it")
+    public static class OpenWindow extends Event {
+        @Label("Application")
+        String application;
+
+        @Label("File Name")
+        String fileName;
+
+        @Label("Document Length")
+        @Description("Length in characters of the document opened, if any")
+        long length;
+
+        @Label("Width")
+        @Description("Width in pixels of the image opened, if any")
+        int width;
+
+        @Label("Height")
+        int height;
+    }
+}
@@ -0,0 +1,224 @@
+package ruindows;
+
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Resource use of every open window, for the Task Manager.
+//
+// Each scene reports how long CSS and layout took in every pulse, which costs
+// two clock reads per scene per pulse and is always on. Node counts and image
+// bytes need a walk over the scene graph, so they are only taken when a
+// sample is asked for. Only used on the FX thread.
+public class WindowMonitor {
+
+    // What a window holds beyond its scene graph
+    public interface Resources {
+        // The owners its media players and timelines are registered to
+        Collection<?> mediaOwners();
+
+        // Image memory not reachable through an ImageView, e.g. decoded pixels
+        long extraImageBytes();
+    }
+
+    public static class Sample {
+        private final Stage stage;
+        private final int nodes;
+        private final long imageBytes;
+        private final int players;
+        private final int timelines;
+        private final double pulseMillisPerSecond;
+        private final double maxPulseMillis;
+
+        Sample(Stage stage, int nodes, long imageBytes, int players, int timelines, double pulseMillisPerSecond,
+                double maxPulseMillis) {
+            this.stage = stage;
+            this.nodes = nodes;
+            this.imageBytes = imageBytes;
+            this.players = players;
+            this.timelines = timelines;
+            this.pulseMillisPerSecond = pulseMillisPerSecond;
+            this.maxPulseMillis = maxPulseMillis;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        public String getTitle() {
+            return stage.getTitle() == null ? "" : stage.getTitle();
+        }
+
+        public int getNodes() {
+            return nodes;
+        }
+
+        public long getImageBytes() {
+            return imageBytes;
+        }
+
+        public int getPlayers() {
+            return players;
+        }
+
+        public int getTimelines() {
+            return timelines;
+        }
+
+        // CSS and layout time spent on this window per second since the previous sample
+        public double getPulseMillisPerSecond() {
+            return pulseMillisPerSecond;
+        }
+
+        public double getMaxPulseMillis() {
+            return maxPulseMillis;
+        }
+    }
+
+    // Pulse timing of one window's current scene
+    private static class Tracked {
+        Scene scene;
+        long layoutStart;
+        long layoutNanos;
+        long maxLayoutNanos;
+        final Runnable before = () -> layoutStart = System.nanoTime();
+        final Runnable after = () -> {
+            long elapsed = System.nanoTime() - layoutStart;
+            layoutNanos += elapsed;
+            maxLayoutNanos = Math.max(maxLayoutNanos, elapsed);
+        };
+        ChangeListener<Scene> sceneListener;
+    }
+
+    private final MediaManager mediaManager;
+    private final Map<Stage, Tracked> tracked = new LinkedHashMap<>();
+    private long lastSampleNanos = System.nanoTime();
+
+    public WindowMonitor(MediaManager mediaManager) {
+        this.mediaManager = mediaManager;
+        for (Window window : Window.getWindows()) {
+            track(window);
+        }
+        Window.getWindows().addListener((ListChangeListener<Window>) change -> {
+            while (change.next()) {
+                for (Window window : change.getRemoved()) {
+                    untrack(window);
+                }
+                for (Window window : change.getAddedSubList()) {
+                    track(window);
+                }
+            }
+        });
+    }
+
+    // Windows without resources own their media directly
+    public static void setResources(Stage stage, Resources resources) {
+        stage.getProperties().put(Resources.class, resources);
+    }
+
+    private void track(Window window) {
+        // Menus, tooltips and other popups belong to the window that opened them
+        if (!(window instanceof Stage) || tracked.containsKey(window)) {
+            return;
+        }
+        Tracked t = new Tracked();
+        t.sceneListener = (obs, oldVal, newVal) -> attach(t, newVal);
+        window.sceneProperty().addListener(t.sceneListener);
+        attach(t, window.getScene());
+        tracked.put((Stage) window, t);
+    }
+
+    private void untrack(Window window) {
+        Tracked t = tracked.remove(window);
+        if (t != null) {
+            window.sceneProperty().removeListener(t.sceneListener);
+            attach(t, null);
+        }
+    }
+
+    private static void attach(Tracked t, Scene scene) {
+        if (t.scene != null) {
+            t.scene.removePreLayoutPulseListener(t.before);
+            t.scene.removePostLayoutPulseListener(t.after);
+        }
+        t.scene = scene;
+        if (scene != null) {
+            scene.addPreLayoutPulseListener(t.before);
+            scene.addPostLayoutPulseListener(t.after);
+        }
+    }
+
+    // One sample per open window, in the order they were opened
+    public List<Sample> sample() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastSampleNanos) / 1e9);
+        lastSampleNanos = now;
+
+        List<Sample> samples = new ArrayList<>();
+        for (Map.Entry<Stage, Tracked> e : tracked.entrySet()) {
+            Stage stage = e.getKey();
+            Tracked t = e.getValue();
+            int[] nodes = {0};
+            long imageBytes = 0;
+            if (t.scene != null && t.scene.getRoot() != null) {
+                Set<Image> images = Collections.newSetFromMap(new IdentityHashMap<>());
+                walk(t.scene.getRoot(), nodes, images);
+                for (Image image : images) {
+                    imageBytes += (long) image.getWidth() * (long) image.getHeight() * 4;
+                }
+            }
+
+            int players = 0;
+            int timelines = 0;
+            Resources resources = (Resources) stage.getProperties().get(Resources.class);
+            Collection<?> owners = resources == null ? List.of(stage) : resources.mediaOwners();
+            for (Object owner : owners) {
+                players += mediaManager.getPlayerCount(owner);
+                timelines += mediaManager.getTimelineCount(owner);
+            }
+            if (resources != null) {
+                imageBytes += resources.extraImageBytes();
+            }
+
+            samples.add(new Sample(stage, nodes[0], imageBytes, players, timelines,
+                    t.layoutNanos / 1e6 / seconds, t.maxLayoutNanos / 1e6));
+            t.layoutNanos = 0;
+            t.maxLayoutNanos = 0;
+        }
+        return samples;
+    }
+
+    // Every node under and including root
+    public static int countNodes(Node root) {
+        int[] nodes = {0};
+        walk(root, nodes, null);
+        return nodes[0];
+    }
+
+    private static void walk(Node node, int[] nodes, Set<Image> images) {
+        nodes[0]++;
+        if (images != null && node instanceof ImageView && ((ImageView) node).getImage() != null) {
+            images.add(((ImageView) node).getImage());
+        }
+        if (node instanceof Parent) {
+            for (Node child : ((Parent) node).getChildrenUnmodifiable()) {
+                walk(child, nodes, images);
+            }
+        }
+    }
+}
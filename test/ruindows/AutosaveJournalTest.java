@@ -0,0 +1,228 @@
+package ruindows;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Replaying journals after a crash, only on top of the version they were
+// written against, and folding them into the store through the writer.
+class AutosaveJournalTest {
+
+    private static final String NAME = "notes.txt";
+    // Header, then start, removed length, byte length, text and checksum per edit
+    private static final int HEADER_SIZE = 12;
+    private static final int RECORD_SIZE = 16;
+
+    @TempDir
+    Path directory;
+
+    private FileStore store;
+    private ScheduledExecutorService executor;
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private final List<Long> sequences = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void openStore() throws IOException {
+        store = FileStore.open(directory.resolve("store"));
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void closeStore() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        store.close();
+    }
+
+    @Test
+    void editsAreReplayedOnTopOfTheirBase() throws Exception {
+        store.writeText(NAME, "hello");
+        journalTwoEdits();
+        crash();
+
+        assertEquals(1, newJournal().recover());
+        assertEquals("Jello world", store.readText(NAME));
+        assertFalse(Files.exists(journalPath()));
+    }
+
+    @Test
+    void journalIsNotReplayedOnceTheBaseChanged() throws Exception {
+        store.writeText(NAME, "hello");
+        journalTwoEdits();
+        // A save the journal never heard of, such as its own compaction
+        store.writeText(NAME, "saved elsewhere");
+        crash();
+
+        assertEquals(0, newJournal().recover());
+        assertEquals("saved elsewhere", store.readText(NAME));
+        assertFalse(Files.exists(journalPath()));
+    }
+
+    @Test
+    void journalOfAMissingFileIsDropped() throws Exception {
+        store.writeText(NAME, "hello");
+        journalTwoEdits();
+        store.delete(NAME);
+        crash();
+
+        assertEquals(0, newJournal().recover());
+        assertFalse(store.contains(NAME));
+        assertFalse(Files.exists(journalPath()));
+    }
+
+    @Test
+    void tornLastEditIsIgnored() throws Exception {
+        store.writeText(NAME, "hello");
+        journalTwoEdits();
+        crash();
+        try (FileChannel channel = FileChannel.open(journalPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        assertEquals(1, newJournal().recover());
+        assertEquals("hello world", store.readText(NAME));
+    }
+
+    @Test
+    void corruptEditEndsTheReplay() throws Exception {
+        store.writeText(NAME, "hello");
+        journalTwoEdits();
+        crash();
+        // Change the inserted text of the first edit, its checksum no longer matches
+        byte[] journal = Files.readAllBytes(journalPath());
+        journal[HEADER_SIZE + 12] ^= 0x20;
+        Files.write(journalPath(), journal);
+
+        assertEquals(0, newJournal().recover());
+        assertEquals("hello", store.readText(NAME));
+    }
+
+    @Test
+    void shutdownSavesThroughTheWriterAndRemovesTheJournal() throws Exception {
+        store.writeText(NAME, "hello");
+        AutosaveJournal journal = newJournal();
+        AutosaveJournal.Session session = journal.open(NAME);
+        Rope edited = Rope.of("hello").append("!");
+        session.record(5, 0, "!", edited);
+
+        journal.shutdown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of(NAME), written);
+        assertEquals("hello!", store.readText(NAME));
+        assertFalse(Files.exists(journalPath()));
+    }
+
+    @Test
+    void foldedSnapshotIsSupersededBySaveOrClose() throws Exception {
+        store.writeText(NAME, "hello");
+        AutosaveJournal journal = newJournal();
+        AutosaveJournal.Session session = journal.open(NAME);
+        // Large enough to be folded into the store on the next flush
+        String inserted = "x".repeat(300 * 1024);
+        session.record(5, 0, inserted, Rope.of("hello" + inserted));
+        awaitWritten();
+        assertEquals(List.of(1L), sequences);
+        assertEquals("hello" + inserted, store.readText(NAME));
+        assertTrue(journal.isCurrent(NAME, 1));
+
+        // A save of the window's text covers everything recorded before it
+        session.record(0, 0, "!", Rope.of("!hello" + inserted));
+        session.rebase();
+        assertFalse(journal.isCurrent(NAME, 1));
+        assertFalse(journal.isCurrent(NAME, 2));
+        session.record(0, 0, "?", Rope.of("?!hello" + inserted));
+        assertTrue(journal.isCurrent(NAME, 3));
+
+        session.close();
+        assertFalse(journal.isCurrent(NAME, 3));
+    }
+
+    @Test
+    void closedSessionLeavesNothingToReplay() throws Exception {
+        store.writeText(NAME, "hello");
+        AutosaveJournal journal = newJournal();
+        AutosaveJournal.Session session = journal.open(NAME);
+        session.record(5, 0, "!", Rope.of("hello!"));
+        session.close();
+        assertFalse(journal.isOpen(NAME));
+        // Let the store thread remove the journal before stopping it
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        executor = Executors.newSingleThreadScheduledExecutor();
+
+        assertFalse(Files.exists(journalPath()));
+        assertEquals(0, newJournal().recover());
+        assertEquals("hello", store.readText(NAME));
+        assertEquals(List.of(), written);
+    }
+
+    // Journals "hello" -> "hello world" -> "Jello world" and waits for it to reach the disk
+    private void journalTwoEdits() throws Exception {
+        AutosaveJournal.Session session = newJournal().open(NAME);
+        Rope base = Rope.of("hello");
+        Rope first = base.insert(5, " world");
+        session.record(5, 0, " world", first);
+        Rope second = first.replace(0, 1, "J");
+        session.record(0, 1, "J", second);
+        awaitSize(journalPath(), HEADER_SIZE + RECORD_SIZE + " world".length() + RECORD_SIZE + "J".length());
+    }
+
+    // Stops the store thread without letting the journal finish, as a crash would
+    private void crash() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    private AutosaveJournal newJournal() throws IOException {
+        return new AutosaveJournal(directory.resolve("journal"), store, executor, (name, content, sequence) -> {
+            store.writeText(name, content);
+            sequences.add(sequence);
+            written.add(name);
+        });
+    }
+
+    private Path journalPath() {
+        return directory.resolve("journal").resolve(NAME + ".jnl");
+    }
+
+    private void awaitWritten() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (written.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                fail("nothing was folded into the store");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static void awaitSize(Path path, long size) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (Files.exists(path) && Files.size(path) == size) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail(path + " did not reach " + size + " bytes");
+    }
+}
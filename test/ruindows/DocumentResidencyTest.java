@@ -0,0 +1,215 @@
+package ruindows;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Compressing documents over the budget, and dropping only those the store
+// can give back.
+class DocumentResidencyTest {
+
+    private final Map<String, String> stored = new ConcurrentHashMap<>();
+    private final List<String> loads = new CopyOnWriteArrayList<>();
+
+    @Test
+    void documentsWithinTheBudgetStayAsTheyAre() throws IOException {
+        DocumentResidency residency = residency(1024 * 1024);
+        Rope content = Rope.of("hello");
+        residency.put("a.txt", content);
+        residency.put("b.txt", "world");
+
+        assertSame(content, residency.get("a.txt"));
+        assertEquals(0, residency.getColdBytes());
+        assertEquals(List.of(), loads);
+    }
+
+    @Test
+    void leastRecentlyUsedDocumentIsCompressedAndComesBackIntact() throws IOException {
+        String first = text("first", 1000);
+        String second = text("second", 1000);
+        DocumentResidency residency = residency(3000);
+        residency.put("a.txt", first);
+        residency.put("b.txt", second);
+
+        assertTrue(residency.getColdBytes() > 0);
+        assertTrue(residency.getColdBytes() < 2 * first.length());
+        assertTrue(residency.isResident("a.txt"));
+
+        // Reading it makes it the most recent one, so the other goes cold instead
+        assertEquals(first, residency.get("a.txt").toString());
+        assertEquals(second, residency.get("b.txt").toString());
+        assertEquals(List.of(), loads);
+    }
+
+    @Test
+    void latestDocumentStaysHotEvenOverTheBudget() throws IOException {
+        DocumentResidency residency = residency(10);
+        String content = text("big", 1000);
+        residency.put("a.txt", content);
+
+        assertSame(content, residency.get("a.txt"));
+        assertEquals(0, residency.getColdBytes());
+    }
+
+    @Test
+    void peekingDoesNotCountAsAUse() throws IOException {
+        DocumentResidency residency = residency(3000);
+        String first = "a".repeat(500);
+        residency.put("a.txt", first);
+        residency.put("b.txt", "b".repeat(500));
+
+        // Still the least recently used, so it goes cold when the budget runs out
+        assertSame(first, residency.peek("a.txt"));
+        residency.put("c.txt", "c".repeat(500));
+        long coldBytes = residency.getColdBytes();
+        assertTrue(coldBytes > 0);
+
+        // A cold document is read without being made hot again
+        assertEquals(first, residency.peek("a.txt").toString());
+        assertEquals(coldBytes, residency.getColdBytes());
+        assertNull(residency.peek("missing.txt"));
+        assertEquals(List.of(), loads);
+    }
+
+    @Test
+    void persistedDocumentIsDroppedAndReadBackFromTheStore() throws IOException {
+        DocumentResidency residency = residency(100);
+        String content = text("saved", 1000);
+        long version = residency.put("a.txt", content);
+        stored.put("a.txt", content);
+        residency.markPersisted("a.txt", version);
+        residency.put("b.txt", text("other", 1000));
+
+        assertFalse(residency.isResident("a.txt"));
+        assertEquals(content, residency.get("a.txt").toString());
+        assertEquals(List.of("a.txt"), loads);
+        assertTrue(residency.isResident("a.txt"));
+    }
+
+    @Test
+    void unsavedDocumentIsNeverDropped() throws IOException {
+        DocumentResidency residency = residency(100);
+        String content = text("unsaved", 1000);
+        residency.put("a.txt", content);
+        residency.put("b.txt", text("other", 1000));
+        residency.put("c.txt", text("third", 1000));
+
+        assertTrue(residency.isResident("a.txt"));
+        assertEquals(content, residency.get("a.txt").toString());
+        assertEquals(List.of(), loads);
+    }
+
+    @Test
+    void persistingAnOlderVersionDoesNotCountForTheNewOne() throws IOException {
+        DocumentResidency residency = residency(100);
+        long saved = residency.put("a.txt", "old");
+        stored.put("a.txt", "old");
+        residency.put("a.txt", text("new", 1000));
+        // The save of the old content finishes after the new content came in
+        residency.markPersisted("a.txt", saved);
+        residency.put("b.txt", text("other", 1000));
+
+        assertTrue(residency.isResident("a.txt"));
+        assertEquals(text("new", 1000), residency.get("a.txt").toString());
+        assertEquals(List.of(), loads);
+    }
+
+    @Test
+    void reloadedDocumentCountsAsPersisted() throws IOException {
+        DocumentResidency residency = residency(100);
+        stored.put("a.txt", text("stored", 1000));
+        residency.get("a.txt");
+        residency.put("b.txt", text("other", 1000));
+
+        assertFalse(residency.isResident("a.txt"));
+        residency.get("a.txt");
+        assertEquals(List.of("a.txt", "a.txt"), loads);
+    }
+
+    @Test
+    void removedDocumentIsForgotten() throws IOException {
+        DocumentResidency residency = residency(1024 * 1024);
+        residency.put("a.txt", "hello");
+        residency.remove("a.txt");
+
+        assertFalse(residency.isResident("a.txt"));
+        assertNull(residency.get("a.txt"));
+        assertEquals(0, residency.getHotBytes());
+    }
+
+    @Test
+    void compressionKeepsTextOutsideLatin1() throws IOException {
+        DocumentResidency residency = residency(2000);
+        String content = text("зелёный 中文 😀", 200);
+        residency.put("a.txt", Rope.of(content));
+        residency.put("b.txt", text("other", 1000));
+
+        assertTrue(residency.getColdBytes() > 0);
+        assertEquals(content, residency.get("a.txt").toString());
+    }
+
+    @Test
+    void threadsCompressingEachOthersDocumentsReadTheirOwnBack() throws Exception {
+        DocumentResidency residency = residency(20_000);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                done.add(threads.submit(() -> {
+                    for (int i = 0; i < 300; i++) {
+                        String name = thread + "-" + i % 5 + ".txt";
+                        String content = text(thread + "/" + i, 200);
+                        residency.put(name, content);
+                        // Another thread may be compressing it by now
+                        assertEquals(content, residency.get(name).toString());
+                        assertEquals(content, residency.peek(name).toString());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+        assertTrue(residency.getColdBytes() > 0);
+        for (int t = 0; t < 4; t++) {
+            for (int i = 295; i < 300; i++) {
+                assertEquals(text(t + "/" + i, 200), residency.get(t + "-" + i % 5 + ".txt").toString());
+            }
+        }
+        assertEquals(List.of(), loads);
+    }
+
+    private DocumentResidency residency(long budgetBytes) {
+        return new DocumentResidency(budgetBytes, name -> {
+            loads.add(name);
+            return stored.get(name);
+        });
+    }
+
+    private static String text(String word, int times) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            text.append(word).append(' ').append(i).append('\n');
+        }
+        return text.toString();
+    }
+}
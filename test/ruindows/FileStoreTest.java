@@ -0,0 +1,317 @@
+package ruindows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Recovery of the index after a crash, content shared between images, and
+// compaction.
+class FileStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedStoreReadsWhatWasWritten() throws IOException {
+        byte[] image = bytes(1000, 1);
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("notes.txt", "hello");
+            store.write("photo.png", FileStore.Kind.IMAGE, image);
+        }
+        try (FileStore store = FileStore.open(directory)) {
+            assertEquals("hello", store.readText("notes.txt"));
+            assertArrayEquals(image, store.read("photo.png"));
+            assertEquals(List.of("notes.txt"), store.names(FileStore.Kind.TEXT));
+            assertEquals(List.of("photo.png"), store.names(FileStore.Kind.IMAGE));
+        }
+    }
+
+    @Test
+    void tornRecordAtTheEndOfTheIndexIsDropped() throws IOException {
+        long committed;
+        long written;
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("a.txt", "first");
+            committed = Files.size(index());
+            store.writeText("b.txt", "second");
+            written = Files.size(index());
+        }
+        // A crash in the middle of appending b's record
+        truncate(index(), committed + (written - committed) / 2);
+
+        try (FileStore store = FileStore.open(directory)) {
+            assertEquals("first", store.readText("a.txt"));
+            assertFalse(store.contains("b.txt"));
+            assertEquals(committed, Files.size(index()));
+            store.writeText("c.txt", "third");
+        }
+        // Records written after the recovery follow the last good one
+        try (FileStore store = FileStore.open(directory)) {
+            assertEquals("first", store.readText("a.txt"));
+            assertEquals("third", store.readText("c.txt"));
+        }
+    }
+
+    @Test
+    void recordWithABadChecksumEndsTheReplay() throws IOException {
+        long committed;
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("a.txt", "first");
+            committed = Files.size(index());
+            store.writeText("b.txt", "second");
+            store.writeText("c.txt", "third");
+        }
+        // Flip a byte of b's name, so its length still looks right
+        try (FileChannel channel = FileChannel.open(index(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            long position = committed + 4 + 4 + 1;
+            channel.read(one, position);
+            one.flip();
+            byte flipped = (byte) (one.get() ^ 0x20);
+            channel.write(ByteBuffer.wrap(new byte[] {flipped}), position);
+        }
+
+        try (FileStore store = FileStore.open(directory)) {
+            assertTrue(store.contains("a.txt"));
+            // Nothing after a corrupt record can be trusted either
+            assertFalse(store.contains("b.txt"));
+            assertFalse(store.contains("c.txt"));
+            assertEquals(committed, Files.size(index()));
+        }
+    }
+
+    @Test
+    void corruptDataIsReportedOnRead() throws IOException {
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("a.txt", "first");
+        }
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("F".getBytes(StandardCharsets.UTF_8)), 0);
+        }
+        try (FileStore store = FileStore.open(directory)) {
+            assertThrows(IOException.class, () -> store.read("a.txt"));
+        }
+    }
+
+    @Test
+    void leftoversOfAnUnfinishedCompactionAreRemoved() throws IOException {
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("a.txt", "first");
+        }
+        Files.write(directory.resolve("data-1.log"), bytes(100, 2));
+        Files.write(directory.resolve("index.log.tmp"), bytes(100, 3));
+
+        try (FileStore store = FileStore.open(directory)) {
+            assertEquals("first", store.readText("a.txt"));
+            assertEquals(List.of(directory.resolve("data-0.log")), segments());
+            assertFalse(Files.exists(directory.resolve("index.log.tmp")));
+        }
+    }
+
+    @Test
+    void identicalImagesShareTheirContent() throws IOException {
+        byte[] image = bytes(4096, 4);
+        try (FileStore store = FileStore.open(directory)) {
+            store.write("a.png", FileStore.Kind.IMAGE, image);
+            store.write("b.png", FileStore.Kind.IMAGE, image.clone());
+            store.write("c.png", FileStore.Kind.IMAGE, image.clone());
+
+            assertEquals(image.length, Files.size(segment()));
+            assertEquals(store.contentHash("a.png"), store.contentHash("c.png"));
+            assertEquals(2L * image.length, store.getDedupSavedBytes());
+            assertArrayEquals(image, store.read("b.png"));
+        }
+    }
+
+    @Test
+    void sharedContentIsGarbageOnlyOnceNoNameRefersToIt() throws IOException {
+        byte[] image = bytes(4096, 5);
+        try (FileStore store = FileStore.open(directory)) {
+            store.write("a.png", FileStore.Kind.IMAGE, image);
+            store.write("b.png", FileStore.Kind.IMAGE, image);
+            String hash = store.contentHash("a.png");
+
+            store.delete("a.png");
+            assertEquals(0, store.getGarbageBytes());
+            assertEquals(0, store.getDedupSavedBytes());
+            assertTrue(store.hasContent(hash));
+            assertArrayEquals(image, store.read("b.png"));
+
+            // Overwriting the last name drops the reference just like deleting it
+            store.write("b.png", FileStore.Kind.IMAGE, bytes(100, 6));
+            assertEquals(image.length, store.getGarbageBytes());
+            assertFalse(store.hasContent(hash));
+
+            // The content is written again rather than linked to garbage
+            store.write("c.png", FileStore.Kind.IMAGE, image);
+            assertEquals(image.length + 100 + image.length, Files.size(segment()));
+        }
+    }
+
+    @Test
+    void referenceCountsAreRebuiltFromTheIndex() throws IOException {
+        byte[] image = bytes(4096, 7);
+        try (FileStore store = FileStore.open(directory)) {
+            store.write("a.png", FileStore.Kind.IMAGE, image);
+            store.write("b.png", FileStore.Kind.IMAGE, image);
+            store.write("c.png", FileStore.Kind.IMAGE, image);
+            store.delete("a.png");
+        }
+        try (FileStore store = FileStore.open(directory)) {
+            assertEquals(image.length, store.getDedupSavedBytes());
+            assertEquals(0, store.getGarbageBytes());
+            store.delete("b.png");
+            store.delete("c.png");
+            assertEquals(image.length, store.getGarbageBytes());
+        }
+    }
+
+    @Test
+    void writeAllLinksContentRepeatedInTheBatchOrAlreadyStored() throws IOException {
+        byte[] stored = bytes(2048, 8);
+        byte[] repeated = bytes(3000, 9);
+        try (FileStore store = FileStore.open(directory)) {
+            store.write("stored.png", FileStore.Kind.IMAGE, stored);
+            long before = Files.size(segment());
+
+            List<FileStore.Prepared> files = new ArrayList<>();
+            files.add(FileStore.prepare("copy.png", FileStore.Kind.IMAGE, ByteBuffer.wrap(stored)));
+            files.add(FileStore.prepare("one.png", FileStore.Kind.IMAGE, ByteBuffer.wrap(repeated)));
+            files.add(FileStore.prepare("two.png", FileStore.Kind.IMAGE, ByteBuffer.wrap(repeated)));
+            files.add(FileStore.prepare("notes.txt", FileStore.Kind.TEXT,
+                    ByteBuffer.wrap("text".getBytes(StandardCharsets.UTF_8))));
+            store.writeAll(files);
+
+            assertEquals(before + repeated.length + 4, Files.size(segment()));
+            assertEquals(stored.length + repeated.length, store.getDedupSavedBytes());
+            assertArrayEquals(stored, store.read("copy.png"));
+            assertArrayEquals(repeated, store.read("two.png"));
+            assertEquals("text", store.readText("notes.txt"));
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveFilesAndDropsGarbage() throws IOException {
+        byte[] image = bytes(4096, 10);
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("kept.txt", "old");
+            store.writeText("kept.txt", "new");
+            store.writeText("gone.txt", "deleted");
+            store.delete("gone.txt");
+            store.write("a.png", FileStore.Kind.IMAGE, image);
+            store.write("b.png", FileStore.Kind.IMAGE, image);
+            store.write("empty.txt", FileStore.Kind.TEXT, new byte[0]);
+            assertFalse(store.compactIfNeeded());
+
+            store.compact();
+
+            assertEquals(List.of(directory.resolve("data-1.log")), segments());
+            assertEquals("new".length() + image.length, Files.size(segment()));
+            assertEquals(0, store.getGarbageBytes());
+            assertEquals(image.length, store.getDedupSavedBytes());
+            assertEquals("new", store.readText("kept.txt"));
+            assertEquals("", store.readText("empty.txt"));
+            assertFalse(store.contains("gone.txt"));
+            assertArrayEquals(image, store.read("b.png"));
+
+            // Still found by hash, so another copy is linked
+            store.write("c.png", FileStore.Kind.IMAGE, image);
+            assertEquals("new".length() + image.length, Files.size(segment()));
+        }
+        try (FileStore store = FileStore.open(directory)) {
+            assertEquals("new", store.readText("kept.txt"));
+            assertArrayEquals(image, store.read("c.png"));
+            assertEquals(2L * image.length, store.getDedupSavedBytes());
+        }
+    }
+
+    @Test
+    void filesKeepTheirOrderThroughCompaction() throws IOException {
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("b.txt", "1");
+            store.writeText("a.txt", "2");
+            store.writeText("c.txt", "3");
+            store.writeText("b.txt", "4");
+            store.compact();
+            assertEquals(List.of("b.txt", "a.txt", "c.txt"), store.names(FileStore.Kind.TEXT));
+        }
+    }
+
+    @Test
+    void longRopeIsStoredIntact() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            text.append(i % 64 == 0 ? '\n' : (char) ('a' + i % 26));
+        }
+        // Characters that take several bytes in UTF-8
+        text.append("é中😀");
+        Rope rope = Rope.of(text);
+        try (FileStore store = FileStore.open(directory)) {
+            store.writeText("long.txt", rope);
+            assertEquals(text.toString(), store.readText("long.txt"));
+            assertEquals(text.toString().getBytes(StandardCharsets.UTF_8).length, store.size("long.txt"));
+        }
+    }
+
+    @Test
+    void missingFilesReadAsNull() throws IOException {
+        try (FileStore store = FileStore.open(directory)) {
+            assertNull(store.read("missing.txt"));
+            assertEquals(-1, store.size("missing.txt"));
+            store.delete("missing.txt");
+            assertEquals(List.of(), store.names(FileStore.Kind.TEXT));
+        }
+    }
+
+    private Path index() {
+        return directory.resolve("index.log");
+    }
+
+    // The single data segment of a store that was opened at least once
+    private Path segment() throws IOException {
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "data-*.log")) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        return segments;
+    }
+
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed * 17);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,194 @@
+package ruindows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Edits, splits and joins against a plain String, and the shape of the tree
+// they leave behind.
+class RopeTest {
+
+    private static final int MAX_LEAF = 2048;
+
+    @Test
+    void randomEditsMatchAStringBuilder() {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder();
+        Rope rope = Rope.EMPTY;
+        for (int i = 0; i < 3000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(Math.min(200, expected.length() - start) + 1);
+            String text = text(random, random.nextInt(300));
+            switch (random.nextInt(4)) {
+                case 0:
+                    rope = rope.insert(start, text);
+                    expected.insert(start, text);
+                    break;
+                case 1:
+                    rope = rope.delete(start, end);
+                    expected.delete(start, end);
+                    break;
+                case 2:
+                    rope = rope.replace(start, end, text);
+                    expected.replace(start, end, text);
+                    break;
+                default:
+                    rope = rope.append(text);
+                    expected.append(text);
+                    break;
+            }
+            assertEquals(expected.length(), rope.length());
+        }
+        assertEquals(expected.toString(), rope.toString());
+        assertLines(expected.toString(), rope);
+        assertBalanced(rope);
+    }
+
+    @Test
+    void splittingAndJoiningAnywhereGivesTheSameText() {
+        String text = text(new Random(7), 20_000);
+        Rope rope = Rope.of(text);
+        for (int split = 0; split <= text.length(); split += 997) {
+            Rope left = rope.subSequence(0, split);
+            Rope right = rope.subSequence(split, text.length());
+            assertEquals(text.substring(0, split), left.toString());
+            assertEquals(text.substring(split), right.toString());
+
+            Rope joined = left.append(right);
+            assertEquals(text, joined.toString());
+            assertEquals(rope.lineCount(), joined.lineCount());
+            assertBalanced(joined);
+        }
+    }
+
+    @Test
+    void editsLeaveEarlierSnapshotsAlone() {
+        Rope before = Rope.of(text(new Random(3), 10_000));
+        String snapshot = before.toString();
+        Rope after = before.insert(5000, "inserted").delete(0, 100).replace(42, 4242, "x");
+
+        assertEquals(snapshot, before.toString());
+        assertEquals(snapshot.length() + "inserted".length() - 100 - 4200 + 1, after.length());
+    }
+
+    @Test
+    void appendingOneCharacterAtATimeStaysBalanced() {
+        Rope rope = Rope.EMPTY;
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            char c = i % 80 == 79 ? '\n' : (char) ('a' + i % 26);
+            rope = rope.append(String.valueOf(c));
+            expected.append(c);
+        }
+        assertBalanced(rope);
+        assertEquals(expected.toString(), rope.toString());
+        assertEquals(200_000 / 80 + 1, rope.lineCount());
+    }
+
+    @Test
+    void chunksAreBoundedAndKeepSurrogatePairsTogether() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 50_000) {
+            // An odd length shifts the pairs across every possible split point
+            text.append("a😀bc");
+        }
+        Rope rope = Rope.of(text);
+        List<String> chunks = new ArrayList<>();
+        rope.forEachChunk(chunks::add);
+
+        assertTrue(chunks.size() > 1);
+        StringBuilder joined = new StringBuilder();
+        for (String chunk : chunks) {
+            assertFalse(chunk.isEmpty());
+            assertTrue(chunk.length() <= MAX_LEAF);
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+            joined.append(chunk);
+        }
+        assertEquals(text.toString(), joined.toString());
+
+        List<String> iterated = new ArrayList<>();
+        Rope.chunks(rope).forEach(iterated::add);
+        assertEquals(chunks, iterated);
+    }
+
+    @Test
+    void linesAreFoundAcrossChunks() {
+        String text = text(new Random(11), 30_000) + "\nlast";
+        assertLines(text, Rope.of(text));
+        assertLines("", Rope.EMPTY);
+        assertLines("\n\n", Rope.of("\n\n"));
+    }
+
+    @Test
+    void noOpEditsReturnTheSameRope() {
+        Rope rope = Rope.of("hello");
+        assertSame(rope, rope.insert(2, ""));
+        assertSame(rope, rope.delete(3, 3));
+        assertSame(rope, rope.subSequence(0, 5));
+        assertSame(Rope.EMPTY, rope.subSequence(2, 2));
+        assertSame(rope, Rope.of(rope));
+    }
+
+    @Test
+    void rangesOutsideTheTextAreRejected() {
+        Rope rope = Rope.of("hello");
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.charAt(5));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.insert(6, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.delete(3, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.subSequence(-1, 2));
+    }
+
+    // Line lookups agree with counting line breaks in the String
+    private static void assertLines(String text, Rope rope) {
+        int lines = 1;
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+                starts.add(i + 1);
+            }
+        }
+        assertEquals(lines, rope.lineCount());
+        for (int line = 0; line < lines; line++) {
+            int start = starts.get(line);
+            int end = line + 1 < lines ? starts.get(line + 1) - 1 : text.length();
+            assertEquals(start, rope.lineStart(line));
+            assertEquals(end, rope.lineEnd(line));
+            assertEquals(line, rope.lineOf(start));
+            assertEquals(line, rope.lineOf(end));
+        }
+    }
+
+    // Within the height bound of an AVL tree over the same number of chunks
+    private static void assertBalanced(Rope rope) {
+        int[] chunks = {0};
+        rope.forEachChunk(chunk -> chunks[0]++);
+        double bound = 1.4405 * Math.log(chunks[0] + 2) / Math.log(2);
+        assertTrue(rope.height() <= bound, "height " + rope.height() + " over " + chunks[0] + " chunks");
+    }
+
+    // Lower-case words separated by spaces and line breaks
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                text.append('\n');
+            } else if (kind == 1) {
+                text.append(' ');
+            } else {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return text.toString();
+    }
+}
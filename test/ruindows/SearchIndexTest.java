@@ -0,0 +1,224 @@
+package ruindows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// BM25 ranking, the last word matching as a prefix, and re-indexing.
+class SearchIndexTest {
+
+    private final Map<String, String> documents = new ConcurrentHashMap<>();
+    private SearchIndex index;
+
+    @BeforeEach
+    void createIndex() {
+        index = new SearchIndex(documents::get);
+    }
+
+    @Test
+    void moreOccurrencesRankHigher() {
+        add("often.txt", "report report report budget");
+        add("once.txt", "report summary notes draft");
+        add("never.txt", "nothing to see");
+        awaitDocuments(3);
+
+        assertEquals(List.of("often.txt", "once.txt"), names(index.search("report", 10)));
+    }
+
+    @Test
+    void shorterDocumentsRankHigherForTheSameCount() {
+        add("short.txt", "apple pie");
+        add("long.txt", "apple pie with cream and a great many other words around it");
+        awaitDocuments(2);
+
+        assertEquals(List.of("short.txt", "long.txt"), names(index.search("apple", 10)));
+    }
+
+    @Test
+    void rareTermsWeighMoreThanCommonOnes() {
+        add("a.txt", "common rare");
+        add("b.txt", "common filler");
+        add("c.txt", "common padding");
+        awaitDocuments(3);
+
+        double common = index.search("common", 10).get(0).getScore();
+        double rare = index.search("rare", 10).get(0).getScore();
+        assertTrue(rare > common, rare + " <= " + common);
+        assertTrue(common > 0);
+    }
+
+    @Test
+    void everyCompleteWordHasToMatch() {
+        add("both.txt", "quarterly report");
+        add("one.txt", "annual report");
+        awaitDocuments(2);
+
+        assertEquals(List.of("both.txt"), names(index.search("quarterly report", 10)));
+        assertEquals(List.of(), names(index.search("monthly report", 10)));
+    }
+
+    @Test
+    void lastWordMatchesAsAPrefix() {
+        add("a.txt", "reporting period");
+        add("b.txt", "the report");
+        add("c.txt", "repository layout");
+        add("d.txt", "unrelated");
+        awaitDocuments(4);
+
+        assertEquals(List.of("a.txt", "b.txt", "c.txt"), sorted(names(index.search("rep", 10))));
+        assertEquals(List.of("a.txt"), names(index.search("period rep", 10)));
+        // Only the last word is a prefix, the others must be typed in full
+        assertEquals(List.of(), names(index.search("rep period", 10)));
+    }
+
+    @Test
+    void everyTermUnderThePrefixIsScored() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("term").append(String.format("%03d", i)).append(' ');
+        }
+        add("many.txt", text.toString());
+        // Sorts after all the terms in the other document
+        add("best.txt", "termzzz termzzz termzzz");
+        awaitDocuments(2);
+
+        assertEquals(List.of("best.txt", "many.txt"), names(index.search("term", 10)));
+    }
+
+    @Test
+    void repeatedWordIsStillCompletedWhenTypedLast() {
+        add("a.txt", "report reporting");
+        add("b.txt", "report");
+        awaitDocuments(2);
+
+        assertEquals(List.of("a.txt", "b.txt"), sorted(names(index.search("report rep", 10))));
+        assertEquals(List.of("a.txt"), names(index.search("reporting report", 10)));
+    }
+
+    @Test
+    void queriesIgnoreCaseAndPunctuation() {
+        add("a.txt", "Hello, World!");
+        awaitDocuments(1);
+
+        assertEquals(List.of("a.txt"), names(index.search("WORLD", 10)));
+        assertEquals(List.of("a.txt"), names(index.search("  hello...wor", 10)));
+        assertEquals(List.of(), names(index.search("  ,.; ", 10)));
+    }
+
+    @Test
+    void limitKeepsTheBestMatches() {
+        add("three.txt", "note note note");
+        add("two.txt", "note note other");
+        add("one.txt", "note other other");
+        awaitDocuments(3);
+
+        assertEquals(List.of("three.txt", "two.txt"), names(index.search("note", 2)));
+    }
+
+    @Test
+    void updateReplacesTheOldTermsAndRemoveDropsThem() {
+        add("a.txt", "original words");
+        add("b.txt", "other");
+        awaitDocuments(2);
+
+        add("a.txt", "rewritten text");
+        await(() -> names(index.search("rewritten", 10)).equals(List.of("a.txt")));
+        assertEquals(List.of(), names(index.search("original", 10)));
+        assertEquals(2, index.getDocumentCount());
+
+        index.remove("a.txt");
+        awaitDocuments(1);
+        assertEquals(List.of(), names(index.search("rewritten", 10)));
+    }
+
+    @Test
+    void snippetShowsTheFirstMatch() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append("filler ");
+        }
+        text.append("needle\n\nin   the haystack");
+        add("a.txt", text.toString());
+        awaitDocuments(1);
+
+        String snippet = index.search("needle", 10).get(0).getSnippet();
+        assertTrue(snippet.startsWith("..."), snippet);
+        assertTrue(snippet.contains("needle in the haystack"), snippet);
+    }
+
+    @Test
+    void addAllIndexesThroughTheGivenLoader() {
+        Map<String, String> stored = Map.of("a.txt", "stored text", "b.txt", "more stored text");
+        index.addAll(List.of("a.txt", "b.txt", "missing.txt"), stored::get);
+        awaitDocuments(2);
+
+        assertEquals(List.of("a.txt", "b.txt"), sorted(names(index.search("stored", 10))));
+    }
+
+    @Test
+    void asyncSearchDeliversItsResults() throws Exception {
+        add("a.txt", "asynchronous");
+        awaitDocuments(1);
+
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<List<SearchIndex.Result>> results = new AtomicReference<>();
+        index.searchAsync("async", 10, found -> {
+            results.set(found);
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a.txt"), names(results.get()));
+    }
+
+    private void add(String name, String content) {
+        documents.put(name, content);
+        index.update(name, content);
+    }
+
+    private void awaitDocuments(int count) {
+        await(() -> index.getDocumentCount() == count);
+    }
+
+    // Updates are applied on the index thread
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        fail("index did not catch up");
+    }
+
+    private static List<String> names(List<SearchIndex.Result> results) {
+        List<String> names = new ArrayList<>();
+        for (SearchIndex.Result result : results) {
+            names.add(result.getName());
+        }
+        return names;
+    }
+
+    private static List<String> sorted(List<String> names) {
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(null);
+        return sorted;
+    }
+}
@@ -0,0 +1,227 @@
+package ruindows;
+
+import javafx.application.Platform;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Results coming back on the FX thread in batches, keyed updates replacing
+// each other, and cancelled owners never hearing back.
+class TaskSchedulerTest {
+
+    private TaskScheduler tasks;
+
+    @BeforeAll
+    static void startToolkit() {
+        try {
+            Platform.startup(() -> { });
+        } catch (IllegalStateException e) {
+            // Already running
+        }
+        // Hiding the only window must not stop the toolkit for the tests after it
+        Platform.setImplicitExit(false);
+    }
+
+    @BeforeEach
+    void createScheduler() {
+        tasks = new TaskScheduler(1, 1);
+    }
+
+    @AfterEach
+    void stopScheduler() throws InterruptedException {
+        tasks.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void resultIsHandedToOnDoneOnTheFxThread() throws Exception {
+        CompletableFuture<Boolean> onFxThread = new CompletableFuture<>();
+        AtomicReference<Object> result = new AtomicReference<>();
+        tasks.submit(null, TaskScheduler.Lane.COMPUTE, () -> {
+            assertFalse(Platform.isFxApplicationThread());
+            return 42;
+        }, (value, error) -> {
+            result.set(error != null ? error : value);
+            onFxThread.complete(Platform.isFxApplicationThread());
+        });
+
+        assertTrue(onFxThread.get(5, TimeUnit.SECONDS));
+        assertEquals(42, result.get());
+    }
+
+    @Test
+    void failureIsHandedToOnDone() throws Exception {
+        IllegalStateException failure = new IllegalStateException("broken");
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        tasks.submit(null, TaskScheduler.Lane.IO, () -> {
+            throw failure;
+        }, (value, e) -> {
+            assertNull(value);
+            error.complete(e);
+        });
+
+        assertSame(failure, error.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void updatesPublishedTogetherRunInOneBatch() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        long batches = tasks.getBatchCount();
+        onFx(() -> {
+            tasks.publish(() -> ran.add("result"));
+            tasks.publish("progress", () -> ran.add("progress 1"));
+            tasks.publish("progress", () -> ran.add("progress 2"));
+            tasks.publish(done::countDown);
+            return null;
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // The keyed update that was replaced never runs, the rest go first
+        assertEquals(List.of("progress 2", "result"), ran);
+        assertEquals(batches + 1, tasks.getBatchCount());
+        assertEquals(3, tasks.getUpdateCount());
+    }
+
+    @Test
+    void failingUpdateDoesNotStopTheBatch() throws Exception {
+        AtomicReference<Throwable> reported = new AtomicReference<>();
+        Thread.UncaughtExceptionHandler previous = onFx(() -> {
+            Thread thread = Thread.currentThread();
+            Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+            thread.setUncaughtExceptionHandler((t, e) -> reported.set(e));
+            return handler;
+        });
+        try {
+            RuntimeException failure = new RuntimeException("update failed");
+            CountDownLatch done = new CountDownLatch(1);
+            onFx(() -> {
+                tasks.publish(() -> {
+                    throw failure;
+                });
+                tasks.publish(done::countDown);
+                return null;
+            });
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertSame(failure, reported.get());
+        } finally {
+            onFx(() -> {
+                Thread.currentThread().setUncaughtExceptionHandler(previous);
+                return null;
+            });
+        }
+    }
+
+    @Test
+    void cancelledOwnerNeverHearsBack() throws Exception {
+        Object owner = new Object();
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean();
+        AtomicBoolean called = new AtomicBoolean();
+
+        // Keep the only worker busy so the owner's task is still queued
+        tasks.execute(TaskScheduler.Lane.COMPUTE, () -> awaitQuietly(blocked));
+        tasks.submit(owner, TaskScheduler.Lane.COMPUTE, () -> {
+            ran.set(true);
+            return null;
+        }, (value, error) -> called.set(true));
+        assertEquals(1, tasks.getTaskCount(owner));
+
+        tasks.cancel(owner);
+        blocked.countDown();
+        awaitLane(TaskScheduler.Lane.COMPUTE);
+
+        assertFalse(ran.get());
+        assertFalse(called.get());
+        assertEquals(0, tasks.getTaskCount(owner));
+    }
+
+    @Test
+    void resultOfATaskCancelledWhileRunningIsDropped() throws Exception {
+        Object owner = new Object();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean called = new AtomicBoolean();
+
+        tasks.submit(owner, TaskScheduler.Lane.COMPUTE, () -> {
+            started.countDown();
+            awaitQuietly(release);
+            return "late";
+        }, (value, error) -> called.set(true));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        tasks.cancel(owner);
+        release.countDown();
+        awaitLane(TaskScheduler.Lane.COMPUTE);
+
+        assertFalse(called.get());
+    }
+
+    @Test
+    void hidingAWindowCancelsItsTasks() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean called = new AtomicBoolean();
+        tasks.execute(TaskScheduler.Lane.COMPUTE, () -> awaitQuietly(blocked));
+
+        Stage stage = onFx(() -> {
+            Stage window = new Stage();
+            window.show();
+            tasks.submit(window, TaskScheduler.Lane.COMPUTE, () -> "result", (value, error) -> called.set(true));
+            return window;
+        });
+        assertEquals(1, tasks.getTaskCount(stage));
+        onFx(() -> {
+            stage.hide();
+            return null;
+        });
+        assertEquals(0, tasks.getTaskCount(stage));
+
+        blocked.countDown();
+        awaitLane(TaskScheduler.Lane.COMPUTE);
+        assertFalse(called.get());
+    }
+
+    // Waits until everything queued on the lane before now has run and published
+    private void awaitLane(TaskScheduler.Lane lane) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        tasks.submit(null, lane, () -> null, (value, error) -> done.complete(null));
+        done.get(5, TimeUnit.SECONDS);
+    }
+
+    private static <T> T onFx(Callable<T> work) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(work.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}